@@ -0,0 +1,54 @@
+package ru.practicum.shareit.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.practicum.shareit.ShareItApp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Поднимает приложение без веб-слоя на H2 в режиме совместимости с PostgreSQL.
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(String database) {
+        return start(database, WebApplicationType.NONE, Map.of());
+    }
+
+    public static ConfigurableApplicationContext start(String database, WebApplicationType type,
+                                                Map<String, Object> overrides) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:" + database
+                + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driverClassName", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.flyway.enabled", "false");
+        properties.put("spring.jpa.hibernate.ddl-auto", "none");
+        properties.put("spring.sql.init.mode", "always");
+        properties.put("spring.sql.init.schema-locations", "classpath:benchmark/schema.sql");
+        // архивация и отправка событий outbox берут advisory lock PostgreSQL, ограничение частоты исказит нагрузку
+        properties.put("shareit.bookings.archive.enabled", "false");
+        properties.put("shareit.outbox.enabled", "false");
+        properties.put("shareit.ratelimit.enabled", "false");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.org.hibernate.SQL", "WARN");
+        properties.put("logging.level.org.hibernate.orm.jdbc.bind", "WARN");
+        properties.put("logging.level.org.springframework.transaction.interceptor", "WARN");
+        properties.put("logging.level.org.springframework.orm.jpa.JpaTransactionManager", "WARN");
+        properties.putAll(overrides);
+        // аргументы командной строки перекрывают application.properties, в отличие от SpringApplicationBuilder.properties
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(ShareItApp.class)
+                .web(type)
+                .logStartupInfo(false)
+                .run(args);
+    }
+}
@@ -0,0 +1,99 @@
+package ru.practicum.shareit.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Детерминированный набор данных: владельцы по 20 вещей, арендаторы и по bookingsPerItem прошлых аренд на вещь.
+ */
+public final class BenchmarkData {
+
+    static final String[] WORDS = {"drill", "saw", "hammer", "ladder", "tent", "bike", "kayak", "camera",
+        "tripod", "projector", "speaker", "mixer", "grill", "heater", "vacuum", "mower", "scooter", "stroller",
+        "guitar", "telescope", "compressor", "generator", "sander", "router", "jigsaw", "wrench"};
+
+    private static final int ITEMS_PER_OWNER = 20;
+    private static final int BATCH = 1000;
+
+    final int owners;
+    final int bookers;
+    final int items;
+
+    private BenchmarkData(int owners, int bookers, int items) {
+        this.owners = owners;
+        this.bookers = bookers;
+        this.items = items;
+    }
+
+    public static BenchmarkData seed(JdbcTemplate jdbc, int items, int bookingsPerItem) {
+        Random random = new Random(42);
+        int owners = Math.max(1, items / ITEMS_PER_OWNER);
+        int bookers = Math.max(1, items / 10);
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 0; i < owners + bookers; i++) {
+            users.add(new Object[]{"user" + i + "@bench.ru", "user" + i});
+        }
+        batch(jdbc, "INSERT INTO users (email, name) VALUES (?, ?)", users);
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            String name = word(random) + " " + word(random);
+            String description = word(random) + " " + word(random) + " " + word(random) + " " + word(random);
+            // каждая десятая вещь недоступна
+            rows.add(new Object[]{name, description, (i + 1) % 10 != 0, 1 + i % owners});
+        }
+        batch(jdbc, "INSERT INTO items (name, description, available, owner_id) VALUES (?, ?, ?, ?)", rows);
+
+        rows = new ArrayList<>();
+        LocalDateTime base = LocalDateTime.now().minusYears(1);
+        for (int item = 1; item <= items; item++) {
+            for (int k = 0; k < bookingsPerItem; k++) {
+                LocalDateTime start = base.plusDays(k * 3L);
+                rows.add(new Object[]{Timestamp.valueOf(start), Timestamp.valueOf(start.plusDays(1)),
+                    owners + 1 + random.nextInt(bookers), item, 1, 1 + (item - 1) % owners});
+            }
+        }
+        batch(jdbc, "INSERT INTO bookings (start, end_time, user_id, item_id, status, owner_id) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", rows);
+        return new BenchmarkData(owners, bookers, items);
+    }
+
+    public long randomOwner() {
+        return 1 + ThreadLocalRandom.current().nextInt(owners);
+    }
+
+    public long randomBooker() {
+        return owners + 1 + ThreadLocalRandom.current().nextInt(bookers);
+    }
+
+    public long randomAvailableItem() {
+        long id = 1 + ThreadLocalRandom.current().nextInt(items);
+        return id % 10 != 0 ? id : id - 1;
+    }
+
+    public static String randomWord() {
+        return WORDS[ThreadLocalRandom.current().nextInt(WORDS.length)];
+    }
+
+    // то, что успел набрать пользователь: от двух первых букв до слова целиком
+    public static String randomPrefix() {
+        String word = randomWord();
+        return word.substring(0, 2 + ThreadLocalRandom.current().nextInt(word.length() - 1));
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static void batch(JdbcTemplate jdbc, String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH) {
+            jdbc.batchUpdate(sql, rows.subList(from, Math.min(rows.size(), from + BATCH)));
+        }
+    }
+}
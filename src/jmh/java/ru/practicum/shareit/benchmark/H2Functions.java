@@ -0,0 +1,42 @@
+package ru.practicum.shareit.benchmark;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Замена функций PostgreSQL для H2, на которой гоняются бенчмарки.
+ */
+public final class H2Functions {
+
+    private H2Functions() {
+    }
+
+    // то же определение, что и в pg_trgm: доля общих триграмм слов, дополненных пробелами
+    public static double similarity(String first, String second) {
+        if (first == null || second == null) {
+            return 0;
+        }
+        Set<String> left = trigrams(first);
+        Set<String> right = trigrams(second);
+        if (left.isEmpty() || right.isEmpty()) {
+            return 0;
+        }
+        Set<String> common = new HashSet<>(left);
+        common.retainAll(right);
+        return (double) common.size() / (left.size() + right.size() - common.size());
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> result = new HashSet<>();
+        for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                result.add(padded.substring(i, i + 3));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,141 @@
+package ru.practicum.shareit.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.practicum.shareit.booking.Status;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingDtoSimple;
+import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemDtoSimple;
+import ru.practicum.shareit.item.dto.ItemDtoWithBookings;
+import ru.practicum.shareit.user.dto.UserIdDto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Сериализация типичных ответов тем же ObjectMapper, что использует веб-слой ({@code mapper=tuned}), и
+ * ObjectMapper без Blackbird и общего пула буферов ({@code mapper=reflective}). Методы *Gzip показывают цену сжатия,
+ * размеры ответов до и после сжатия печатаются при старте.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param("100")
+    private int size;
+
+    @Param({"tuned", "reflective"})
+    private String mapper;
+
+    private ConfigurableApplicationContext context;
+    private ObjectMapper objectMapper;
+    private List<BookingDto> bookings;
+    private List<ItemDtoWithBookings> items;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkContext.start("json");
+        objectMapper = "tuned".equals(mapper) ? context.getBean(ObjectMapper.class)
+                : Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        bookings = new ArrayList<>();
+        items = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (long i = 0; i < size; i++) {
+            UserIdDto booker = new UserIdDto();
+            booker.setId(i);
+            ItemDtoSimple item = new ItemDtoSimple();
+            item.setId(i);
+            item.setName("item " + i);
+            BookingDto booking = new BookingDto();
+            booking.setId(i);
+            booking.setStart(now.plusDays(i));
+            booking.setEnd(now.plusDays(i + 1));
+            booking.setBooker(booker);
+            booking.setItem(item);
+            booking.setStatus(Status.APPROVED);
+            bookings.add(booking);
+
+            List<CommentDto> comments = new ArrayList<>();
+            for (long c = 0; c < 5; c++) {
+                CommentDto comment = new CommentDto();
+                comment.setId(i * 10 + c);
+                comment.setText("great item, would rent again " + c);
+                comment.setAuthorName("user " + c);
+                comment.setCreated(Instant.now());
+                comments.add(comment);
+            }
+            items.add(new ItemDtoWithBookings(i, "item " + i, "description of item " + i, true, null,
+                    new BookingDtoSimple(i, now.plusDays(1), now.plusDays(2)),
+                    new BookingDtoSimple(i + 1, now.minusDays(2), now.minusDays(1)), comments, 5L));
+        }
+        printSizes("bookingList", bookings);
+        printSizes("ownerItemList", items);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] bookingList() throws Exception {
+        return objectMapper.writeValueAsBytes(bookings);
+    }
+
+    @Benchmark
+    public byte[] ownerItemList() throws Exception {
+        return objectMapper.writeValueAsBytes(items);
+    }
+
+    @Benchmark
+    public byte[] bookingListGzip() throws Exception {
+        return gzip(bookings);
+    }
+
+    @Benchmark
+    public byte[] ownerItemListGzip() throws Exception {
+        return gzip(items);
+    }
+
+    // так же, как сжимает ответ Tomcat: GZIPOutputStream с уровнем по умолчанию
+    private byte[] gzip(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(gzip, value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void printSizes(String name, Object value) throws IOException {
+        System.out.printf("%s: %d bytes, gzip %d bytes%n", name, objectMapper.writeValueAsBytes(value).length,
+                gzip(value).length);
+    }
+}
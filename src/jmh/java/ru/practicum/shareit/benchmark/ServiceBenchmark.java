@@ -0,0 +1,93 @@
+package ru.practicum.shareit.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.booking.BookingService;
+import ru.practicum.shareit.booking.dto.BookingCreateDto;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.item.ItemService;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemDtoWithBookings;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сервисные методы целиком, вместе с транзакциями, Hibernate и базой.
+ * Размер набора данных задаётся параметрами, например: -Djmh.args="ServiceBenchmark -p items=10000".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ServiceBenchmark {
+
+    @Param("1000")
+    private int items;
+
+    @Param("10")
+    private int bookingsPerItem;
+
+    private ConfigurableApplicationContext context;
+    private ItemService itemService;
+    private BookingService bookingService;
+    private BenchmarkData data;
+    private final AtomicLong slot = new AtomicLong();
+    private final LocalDateTime future = LocalDateTime.now().plusYears(50);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("service");
+        data = BenchmarkData.seed(context.getBean(JdbcTemplate.class), items, bookingsPerItem);
+        itemService = context.getBean(ItemService.class);
+        bookingService = context.getBean(BookingService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<ItemDtoWithBookings> getItemsByOwnerId() {
+        return itemService.getItemsByOwnerId(data.randomOwner(), null, 20);
+    }
+
+    @Benchmark
+    public List<ItemDto> getItemsByText() {
+        return itemService.getItemsByText(BenchmarkData.randomWord(), 100, false);
+    }
+
+    @Benchmark
+    public List<ItemDto> getItemsByTypeahead() {
+        return itemService.getItemsByText(BenchmarkData.randomPrefix(), 10, true);
+    }
+
+    @Benchmark
+    public BookingDto createBooking() {
+        // каждая бронь занимает свой час, поэтому пересечений не бывает
+        LocalDateTime start = future.plusHours(slot.getAndIncrement());
+        BookingCreateDto dto = new BookingCreateDto();
+        dto.setItemId(data.randomAvailableItem());
+        dto.setStart(start);
+        dto.setEnd(start.plusMinutes(30));
+        return bookingService.createBooking(dto, data.randomBooker());
+    }
+}
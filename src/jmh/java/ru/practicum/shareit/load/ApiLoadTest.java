@@ -0,0 +1,152 @@
+package ru.practicum.shareit.load;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.benchmark.BenchmarkContext;
+import ru.practicum.shareit.benchmark.BenchmarkData;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Нагрузка на REST API приложения, поднятого на H2 с данными нужного объёма. Для каждого эндпоинта печатает
+ * p50/p95/p99 и пропускную способность, а полное распределение задержек пишет в out/&lt;эндпоинт&gt;.hgrm
+ * (формат HdrHistogram, строится на hdrhistogram.github.io/HdrHistogram/plotFiles.html).
+ * Параметры передаются аргументами вида key=value: clients, seconds, warmup, items, bookings, pool, profile, out
+ * и mix - веса эндпоинтов вида items:4,search:2,bookings:4,owner:2,create:1 (эндпоинт с весом 0 не вызывается,
+ * подсказки при наборе - typeahead).
+ */
+public final class ApiLoadTest {
+
+    private static final String DEFAULT_MIX = "items:4,search:2,bookings:4,owner:2,create:1";
+    private static final double NANOS_IN_MS = 1_000_000.0;
+    private static final long BOOKING_HORIZON_MINUTES = Duration.ofDays(3650).toMinutes();
+
+    private ApiLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = ThreadModeLoadTest.parse(args);
+        int clients = Integer.parseInt(options.getOrDefault("clients", "100"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("seconds", "30")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        int items = Integer.parseInt(options.getOrDefault("items", "2000"));
+        int bookingsPerItem = Integer.parseInt(options.getOrDefault("bookings", "10"));
+        Path out = Path.of(options.getOrDefault("out", "target/load"));
+
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("server.port", "0");
+        overrides.put("spring.datasource.hikari.maximum-pool-size", options.getOrDefault("pool", "20"));
+        if (options.containsKey("profile")) {
+            overrides.put("spring.profiles.active", options.get("profile"));
+        }
+        ConfigurableApplicationContext context = BenchmarkContext.start("api-load", WebApplicationType.SERVLET,
+                overrides);
+        try {
+            BenchmarkData data = BenchmarkData.seed(context.getBean(JdbcTemplate.class), items, bookingsPerItem);
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            List<LoadDriver.Endpoint> endpoints = mix(options.getOrDefault("mix", DEFAULT_MIX), base, data);
+            LoadDriver.Result result = new LoadDriver().run(endpoints, clients, warmup, duration);
+            report(result, out);
+        } finally {
+            context.close();
+        }
+    }
+
+    private static List<LoadDriver.Endpoint> mix(String mix, String base, BenchmarkData data) {
+        Map<String, Endpoint> known = endpoints(base, data);
+        List<LoadDriver.Endpoint> result = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] entry = part.trim().split(":");
+            Endpoint endpoint = known.get(entry[0]);
+            if (endpoint == null) {
+                throw new IllegalArgumentException("Неизвестный эндпоинт " + entry[0] + ", доступны " + known.keySet());
+            }
+            int weight = entry.length > 1 ? Integer.parseInt(entry[1]) : 1;
+            if (weight > 0) {
+                result.add(new LoadDriver.Endpoint(endpoint.name(), weight, endpoint.request()));
+            }
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("В mix нет ни одного эндпоинта с положительным весом");
+        }
+        return result;
+    }
+
+    private static Map<String, Endpoint> endpoints(String base, BenchmarkData data) {
+        Map<String, Endpoint> endpoints = new HashMap<>();
+        endpoints.put("items", new Endpoint("GET /items", random -> HttpRequest.newBuilder(URI.create(base + "/items"))
+                .header("X-Sharer-User-Id", String.valueOf(data.randomOwner())).build()));
+        endpoints.put("search", new Endpoint("GET /items/search", random -> HttpRequest.newBuilder(
+                URI.create(base + "/items/search?text=" + BenchmarkData.randomWord())).build()));
+        endpoints.put("typeahead", new Endpoint("GET /items/search?typeahead", random -> HttpRequest.newBuilder(
+                URI.create(base + "/items/search?typeahead=true&limit=10&text=" + BenchmarkData.randomPrefix())).build()));
+        endpoints.put("bookings", new Endpoint("GET /bookings", random -> HttpRequest.newBuilder(
+                        URI.create(base + "/bookings?status=ALL&limit=50"))
+                .header("X-Sharer-User-Id", String.valueOf(data.randomBooker())).build()));
+        endpoints.put("owner", new Endpoint("GET /bookings/owner", random -> HttpRequest.newBuilder(
+                        URI.create(base + "/bookings/owner?status=PAST&limit=50"))
+                .header("X-Sharer-User-Id", String.valueOf(data.randomOwner())).build()));
+        endpoints.put("create", new Endpoint("POST /bookings", random -> HttpRequest.newBuilder(
+                        URI.create(base + "/bookings"))
+                .header("X-Sharer-User-Id", String.valueOf(data.randomBooker()))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(newBooking(random, data))).build()));
+        return endpoints;
+    }
+
+    // часовая аренда в случайную минуту ближайших десяти лет: пересечения с уже созданными почти не случаются
+    private static String newBooking(ThreadLocalRandom random, BenchmarkData data) {
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES)
+                .plusDays(1)
+                .plusMinutes(random.nextLong(BOOKING_HORIZON_MINUTES));
+        return String.format("{\"itemId\":%d,\"start\":\"%s\",\"end\":\"%s\"}", data.randomAvailableItem(), start,
+                start.plusHours(1));
+    }
+
+    private static void report(LoadDriver.Result result, Path out) throws IOException {
+        Files.createDirectories(out);
+        StringBuilder report = new StringBuilder(String.format("%-20s %10s %10s %10s %10s %10s %8s%n",
+                "endpoint", "requests", "req/s", "p50 ms", "p95 ms", "p99 ms", "errors"));
+        result.endpoints().forEach((name, endpoint) -> {
+            Histogram latencies = endpoint.latencies();
+            report.append(String.format("%-20s %10d %10.1f %10.2f %10.2f %10.2f %8d%n", name,
+                    latencies.getTotalCount(), endpoint.throughput(result.duration()),
+                    latencies.getValueAtPercentile(50) / NANOS_IN_MS,
+                    latencies.getValueAtPercentile(95) / NANOS_IN_MS,
+                    latencies.getValueAtPercentile(99) / NANOS_IN_MS, endpoint.errors()));
+            Path file = out.resolve(fileName(name) + ".hgrm");
+            try (PrintStream stream = new PrintStream(Files.newOutputStream(file))) {
+                latencies.outputPercentileDistribution(stream, NANOS_IN_MS);
+            } catch (IOException e) {
+                throw new IllegalStateException("Не удалось записать " + file, e);
+            }
+        });
+        report.append(String.format("%-20s %10s %10.1f%n", "total", "", result.throughput()));
+        System.out.print(report);
+        System.out.println("Распределения задержек (мс): " + out.toAbsolutePath());
+    }
+
+    // "GET /bookings/owner" -> "get-bookings-owner"
+    private static String fileName(String endpoint) {
+        return endpoint.toLowerCase().replaceAll("[^a-z0-9]+", "-").replaceAll("^-|-$", "");
+    }
+
+    private record Endpoint(String name, Function<ThreadLocalRandom, HttpRequest> request) {
+    }
+}
@@ -0,0 +1,107 @@
+package ru.practicum.shareit.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Замкнутая модель нагрузки: каждый клиент шлёт следующий запрос сразу после ответа на предыдущий.
+ * Эндпоинты выбираются случайно пропорционально весу, задержки пишутся в HdrHistogram по каждому эндпоинту.
+ */
+public final class LoadDriver {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    public Result run(List<Endpoint> endpoints, int clients, Duration warmup, Duration duration)
+            throws InterruptedException {
+        Map<String, Recorder> recorders = new LinkedHashMap<>();
+        Map<String, LongAdder> errors = new LinkedHashMap<>();
+        for (Endpoint endpoint : endpoints) {
+            recorders.put(endpoint.name(), new Recorder(MAX_LATENCY_NANOS, 3));
+            errors.put(endpoint.name(), new LongAdder());
+        }
+        int totalWeight = endpoints.stream().mapToInt(Endpoint::weight).sum();
+        long deadline = System.nanoTime() + warmup.toNanos() + duration.toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                executor.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        Endpoint endpoint = pick(endpoints, totalWeight);
+                        long start = System.nanoTime();
+                        boolean ok = send(endpoint.request().apply(ThreadLocalRandom.current()));
+                        recorders.get(endpoint.name()).recordValue(Math.min(System.nanoTime() - start,
+                                MAX_LATENCY_NANOS));
+                        if (!ok) {
+                            errors.get(endpoint.name()).increment();
+                        }
+                    }
+                });
+            }
+            Thread.sleep(warmup.toMillis());
+            // всё, что накопилось за прогрев, выбрасываем
+            recorders.values().forEach(Recorder::reset);
+            errors.values().forEach(LongAdder::reset);
+            executor.shutdown();
+            executor.awaitTermination(duration.toMillis() + MAX_LATENCY_NANOS / 1_000_000, TimeUnit.MILLISECONDS);
+        }
+        Map<String, EndpointResult> results = new LinkedHashMap<>();
+        recorders.forEach((name, recorder) -> results.put(name,
+                new EndpointResult(recorder.getIntervalHistogram(), errors.get(name).sum())));
+        return new Result(results, duration);
+    }
+
+    private boolean send(HttpRequest request) {
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() < 400;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static Endpoint pick(List<Endpoint> endpoints, int totalWeight) {
+        int value = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Endpoint endpoint : endpoints) {
+            value -= endpoint.weight();
+            if (value < 0) {
+                return endpoint;
+            }
+        }
+        return endpoints.get(endpoints.size() - 1);
+    }
+
+    public record Endpoint(String name, int weight, Function<ThreadLocalRandom, HttpRequest> request) {
+    }
+
+    public record EndpointResult(Histogram latencies, long errors) {
+
+        public double throughput(Duration duration) {
+            return latencies.getTotalCount() * 1000.0 / duration.toMillis();
+        }
+    }
+
+    public record Result(Map<String, EndpointResult> endpoints, Duration duration) {
+
+        public double throughput() {
+            return endpoints.values().stream().mapToDouble(result -> result.throughput(duration)).sum();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.practicum.shareit.load;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.benchmark.BenchmarkContext;
+import ru.practicum.shareit.benchmark.BenchmarkData;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сравнение пропускной способности на платформенных и виртуальных потоках при одинаковом пуле соединений.
+ * Параметры передаются аргументами вида key=value: clients, seconds, warmup, items, pool, tomcatThreads.
+ */
+public final class ThreadModeLoadTest {
+
+    private ThreadModeLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int clients = Integer.parseInt(options.getOrDefault("clients", "400"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("seconds", "20")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        int items = Integer.parseInt(options.getOrDefault("items", "2000"));
+        String pool = options.getOrDefault("pool", "20");
+        String tomcatThreads = options.getOrDefault("tomcatThreads", "50");
+
+        StringBuilder report = new StringBuilder();
+        for (String mode : List.of("platform", "virtual")) {
+            Map<String, Object> overrides = new HashMap<>();
+            overrides.put("server.port", "0");
+            overrides.put("server.tomcat.threads.max", tomcatThreads);
+            overrides.put("spring.datasource.hikari.maximum-pool-size", pool);
+            if ("virtual".equals(mode)) {
+                overrides.put("spring.profiles.active", "virtual");
+            }
+            ConfigurableApplicationContext context = BenchmarkContext.start("load-" + mode,
+                    WebApplicationType.SERVLET, overrides);
+            try {
+                BenchmarkData data = BenchmarkData.seed(context.getBean(JdbcTemplate.class), items, 10);
+                String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+                LoadDriver.Result result = new LoadDriver().run(readMix(base, data), clients, warmup, duration);
+                report.append(String.format("%-8s %10.1f req/s", mode, result.throughput()));
+                result.endpoints().forEach((name, endpoint) -> report.append(String.format(
+                        "  %s p99=%.1fms errors=%d", name,
+                        endpoint.latencies().getValueAtPercentile(99) / 1_000_000.0, endpoint.errors())));
+                report.append(System.lineSeparator());
+            } finally {
+                context.close();
+            }
+        }
+        System.out.print(report);
+    }
+
+    private static List<LoadDriver.Endpoint> readMix(String base, BenchmarkData data) {
+        return List.of(
+                new LoadDriver.Endpoint("GET /items", 4, random -> HttpRequest.newBuilder(URI.create(base + "/items"))
+                        .header("X-Sharer-User-Id", String.valueOf(data.randomOwner())).build()),
+                new LoadDriver.Endpoint("GET /bookings", 4, random -> HttpRequest.newBuilder(
+                                URI.create(base + "/bookings?status=ALL&limit=50"))
+                        .header("X-Sharer-User-Id", String.valueOf(data.randomBooker())).build()),
+                new LoadDriver.Endpoint("GET /items/search", 2, random -> HttpRequest.newBuilder(
+                        URI.create(base + "/items/search?text=" + BenchmarkData.randomWord())).build()));
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                options.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+        }
+        return options;
+    }
+}
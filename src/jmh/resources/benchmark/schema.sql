@@ -0,0 +1,104 @@
+-- схема из db/migration без специфичных для PostgreSQL индексов и ограничений
+
+CREATE ALIAS IF NOT EXISTS similarity FOR 'ru.practicum.shareit.benchmark.H2Functions.similarity';
+
+CREATE TABLE users
+(
+    id bigint NOT NULL GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email character varying(100) NOT NULL,
+    name character varying(100) NOT NULL,
+    CONSTRAINT users_email_unique UNIQUE (email)
+);
+
+CREATE TABLE requests
+(
+    id bigint NOT NULL GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    description character varying(200) NOT NULL,
+    user_id bigint NOT NULL,
+    created timestamp without time zone DEFAULT now(),
+    CONSTRAINT fk_requests_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+CREATE TABLE items
+(
+    id bigint NOT NULL GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name character varying(100) NOT NULL,
+    description character varying(200) NOT NULL,
+    available boolean DEFAULT true,
+    owner_id bigint NOT NULL,
+    request_id bigint,
+    version bigint NOT NULL DEFAULT 0,
+    CONSTRAINT fk_item_user FOREIGN KEY (owner_id) REFERENCES users (id) ON DELETE CASCADE,
+    CONSTRAINT fk_item_request FOREIGN KEY (request_id) REFERENCES requests (id) ON DELETE SET NULL
+);
+
+CREATE INDEX idx_items_owner_id_id ON items (owner_id, id);
+CREATE INDEX idx_items_request_id ON items (request_id);
+CREATE INDEX idx_requests_created_id ON requests (created DESC, id DESC);
+CREATE INDEX idx_requests_user_created_id ON requests (user_id, created DESC, id DESC);
+
+CREATE SEQUENCE bookings_seq START WITH 50 INCREMENT BY 50;
+
+CREATE TABLE bookings
+(
+    id bigint NOT NULL DEFAULT nextval('bookings_seq') PRIMARY KEY,
+    start timestamp NOT NULL,
+    end_time timestamp NOT NULL,
+    user_id bigint NOT NULL,
+    item_id bigint NOT NULL,
+    status smallint DEFAULT 0,
+    version bigint NOT NULL DEFAULT 0,
+    owner_id bigint NOT NULL,
+    CONSTRAINT fk_user_id FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE,
+    CONSTRAINT fk_item_id FOREIGN KEY (item_id) REFERENCES items (id) ON DELETE RESTRICT,
+    CONSTRAINT fk_booking_owner_id FOREIGN KEY (owner_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_bookings_user_start ON bookings (user_id, start, id);
+CREATE INDEX idx_bookings_user_end ON bookings (user_id, end_time, id);
+CREATE INDEX idx_bookings_user_status_start ON bookings (user_id, status, start, id);
+CREATE INDEX idx_bookings_item_start ON bookings (item_id, start, id);
+CREATE INDEX idx_bookings_item_end ON bookings (item_id, end_time DESC, id DESC);
+CREATE INDEX idx_bookings_owner_start ON bookings (owner_id, start, id);
+CREATE INDEX idx_bookings_owner_end ON bookings (owner_id, end_time, id);
+CREATE INDEX idx_bookings_owner_status_start ON bookings (owner_id, status, start, id);
+CREATE INDEX idx_bookings_end_time ON bookings (end_time);
+
+CREATE TABLE bookings_archive
+(
+    id bigint NOT NULL,
+    start timestamp NOT NULL,
+    end_time timestamp NOT NULL,
+    user_id bigint NOT NULL,
+    item_id bigint NOT NULL,
+    status smallint,
+    version bigint NOT NULL DEFAULT 0,
+    owner_id bigint NOT NULL,
+    PRIMARY KEY (id, end_time)
+);
+
+CREATE TABLE comments
+(
+    id bigint NOT NULL GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    text varchar(256) NOT NULL,
+    item_id bigint NOT NULL,
+    user_id bigint NOT NULL,
+    created timestamp DEFAULT now(),
+    version bigint NOT NULL DEFAULT 0,
+    CONSTRAINT fk_comm_user_id FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE,
+    CONSTRAINT fk_comm_item_id FOREIGN KEY (item_id) REFERENCES items (id) ON DELETE CASCADE,
+    CONSTRAINT unique_item_user UNIQUE (item_id, user_id)
+);
+
+CREATE INDEX idx_comments_item_created ON comments (item_id, created DESC);
+CREATE INDEX idx_comments_user ON comments (user_id);
+
+CREATE TABLE outbox
+(
+    id bigint NOT NULL GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    aggregate_type varchar(32) NOT NULL,
+    aggregate_id bigint NOT NULL,
+    event_type varchar(32) NOT NULL,
+    payload text NOT NULL,
+    created timestamp NOT NULL DEFAULT now()
+);
@@ -0,0 +1,25 @@
+package ru.practicum.shareit;
+
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JsonConfig {
+
+    // доступ к полям DTO через сгенерированные LambdaMetafactory вызовы вместо рефлексии
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    // пул буферов по умолчанию привязан к потоку, а виртуальные потоки не переиспользуются, поэтому пул общий
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer jsonRecyclerPoolCustomizer() {
+        return builder -> builder.postConfigurer(mapper -> mapper.getFactory()
+                .setRecyclerPool(JsonRecyclerPools.sharedConcurrentDequePool()));
+    }
+}
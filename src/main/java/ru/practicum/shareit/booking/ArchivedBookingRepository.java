@@ -0,0 +1,68 @@
+package ru.practicum.shareit.booking;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import ru.practicum.shareit.booking.dto.BookingDtoSimple;
+import ru.practicum.shareit.booking.dto.BookingMark;
+import ru.practicum.shareit.booking.dto.BookingVersion;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+// в архиве только завершённые бронирования, поэтому текущих и будущих выборок здесь нет
+public interface ArchivedBookingRepository extends Repository<ArchivedBooking, Long> {
+
+    @EntityGraph(attributePaths = "item")
+    Window<ArchivedBooking> findByBookerIdOrderByStartAscIdAsc(Long bookerId, ScrollPosition position, Limit limit);
+
+    @EntityGraph(attributePaths = "item")
+    Window<ArchivedBooking> findByBookerIdAndEndBeforeOrderByEndAscIdAsc(Long bookerId, LocalDateTime end,
+                                                                         ScrollPosition position, Limit limit);
+
+    @EntityGraph(attributePaths = "item")
+    Window<ArchivedBooking> findByBookerIdAndStatusOrderByStartAscIdAsc(Long bookerId, Status status,
+                                                                        ScrollPosition position, Limit limit);
+
+    @EntityGraph(attributePaths = "item")
+    Window<ArchivedBooking> findByOwnerIdOrderByStartAscIdAsc(Long ownerId, ScrollPosition position, Limit limit);
+
+    @EntityGraph(attributePaths = "item")
+    Window<ArchivedBooking> findByOwnerIdAndEndBeforeOrderByEndAscIdAsc(Long ownerId, LocalDateTime end,
+                                                                        ScrollPosition position, Limit limit);
+
+    @EntityGraph(attributePaths = "item")
+    Window<ArchivedBooking> findByOwnerIdAndStatusOrderByStartAscIdAsc(Long ownerId, Status status,
+                                                                       ScrollPosition position, Limit limit);
+
+    @Query("SELECT new ru.practicum.shareit.booking.dto.BookingDtoSimple(b.id, b.start, b.end) FROM ArchivedBooking b " +
+            "WHERE b.id = :id AND b.booker.id = :bookerId")
+    Optional<BookingDtoSimple> findSimpleByIdAndBookerId(@Param("id") Long id, @Param("bookerId") Long bookerId);
+
+    @Query("SELECT new ru.practicum.shareit.booking.dto.BookingDtoSimple(b.id, b.start, b.end) FROM ArchivedBooking b " +
+            "WHERE b.id = :id AND b.ownerId = :ownerId")
+    Optional<BookingDtoSimple> findSimpleByIdAndOwnerId(@Param("id") Long id, @Param("ownerId") Long ownerId);
+
+    @Query("SELECT new ru.practicum.shareit.booking.dto.BookingVersion(b.version, b.item.version) FROM ArchivedBooking b " +
+            "WHERE b.id = :id")
+    Optional<BookingVersion> findVersionById(@Param("id") Long id);
+
+    @EntityGraph(attributePaths = "item")
+    Optional<ArchivedBooking> findById(Long id);
+
+    boolean existsByBookerIdAndItemId(Long bookerId, Long itemId);
+
+    @Query("SELECT DISTINCT b.item.id FROM ArchivedBooking b WHERE b.booker.id = :bookerId")
+    List<Long> findItemIdsByBookerId(@Param("bookerId") Long bookerId);
+
+    @Query(value = "SELECT DISTINCT ON (b.item_id) b.item_id AS itemId, b.id AS id, b.start AS start, b.end_time AS \"end\" " +
+            "FROM bookings_archive b WHERE b.item_id IN (:itemIds) " +
+            "ORDER BY b.item_id, b.end_time DESC, b.id DESC", nativeQuery = true)
+    List<BookingMark> findLastBookings(@Param("itemIds") Collection<Long> itemIds);
+}
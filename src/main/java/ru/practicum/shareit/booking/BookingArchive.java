@@ -0,0 +1,119 @@
+package ru.practicum.shareit.booking;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Переносит бронирования, закончившиеся раньше чем horizon назад, из bookings в секционированную по годам
+ * bookings_archive. Списки бронирований читают архив только по явному запросу (includeArchive).
+ */
+@Slf4j
+@Component
+public class BookingArchive {
+
+    // один и тот же ключ у всех экземпляров приложения: архивацию в каждый момент ведёт только один из них
+    private static final long LOCK_KEY = 0x5348415245L;
+    private static final String MOVE = "WITH moved AS (DELETE FROM bookings WHERE id IN ("
+            + "SELECT id FROM bookings WHERE end_time < ? ORDER BY end_time LIMIT ? FOR UPDATE SKIP LOCKED) "
+            + "RETURNING id, start, end_time, user_id, item_id, status, version, owner_id) "
+            + "INSERT INTO bookings_archive (id, start, end_time, user_id, item_id, status, version, owner_id) "
+            + "SELECT id, start, end_time, user_id, item_id, status, version, owner_id FROM moved";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration horizon;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Set<Integer> partitions = ConcurrentHashMap.newKeySet();
+    private final Counter archived;
+
+    public BookingArchive(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                          @Value("${shareit.bookings.archive.enabled:false}") boolean enabled,
+                          @Value("${shareit.bookings.archive.horizon:365d}") Duration horizon,
+                          @Value("${shareit.bookings.archive.batch-size:1000}") int batchSize,
+                          @Value("${shareit.bookings.archive.max-batches-per-run:100}") int maxBatchesPerRun,
+                          MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.horizon = horizon;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.archived = Counter.builder("shareit.bookings.archived")
+                .description("Бронирования, перенесённые в архив")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // каждая пачка в своей транзакции, чтобы не держать блокировки на весь перенос; за один запуск переносится
+    // не больше maxBatchesPerRun пачек, чтобы первый запуск на большом накопленном хвосте не занимал планировщик часами
+    @Scheduled(fixedDelayString = "${shareit.bookings.archive.interval:PT1H}",
+            initialDelayString = "${shareit.bookings.archive.initial-delay:PT1M}")
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime before = LocalDateTime.now().minus(horizon);
+        long total = 0;
+        int batches = 0;
+        Integer moved;
+        do {
+            moved = transactionTemplate.execute(status -> moveBatch(before));
+            total += moved != null ? moved : 0;
+            batches++;
+        } while (moved != null && moved == batchSize && batches < maxBatchesPerRun);
+        if (total > 0) {
+            log.info("В архив перенесено {} бронирований, закончившихся до {}", total, before);
+        }
+        if (moved != null && moved == batchSize) {
+            log.info("Перенос остановлен после {} пачек, остаток будет перенесён при следующем запуске", batches);
+        }
+    }
+
+    private int moveBatch(LocalDateTime before) {
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class,
+                LOCK_KEY))) {
+            return 0;
+        }
+        // секции создаются только под годы, в которых есть что переносить, пустые секции не плодим
+        Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(end_time) AS oldest, MAX(end_time) AS newest "
+                + "FROM bookings WHERE end_time < ?", Timestamp.valueOf(before));
+        if (range.get("oldest") == null) {
+            return 0;
+        }
+        int from = ((Timestamp) range.get("oldest")).toLocalDateTime().getYear();
+        int to = ((Timestamp) range.get("newest")).toLocalDateTime().getYear();
+        for (int year = from; year <= to; year++) {
+            createPartition(year);
+        }
+        int moved = jdbcTemplate.update(MOVE, Timestamp.valueOf(before), batchSize);
+        archived.increment(moved);
+        return moved;
+    }
+
+    private void createPartition(int year) {
+        if (partitions.contains(year)) {
+            return;
+        }
+        jdbcTemplate.execute(String.format("CREATE TABLE IF NOT EXISTS bookings_archive_%d PARTITION OF bookings_archive "
+                + "FOR VALUES FROM ('%d-01-01') TO ('%d-01-01')", year, year, year + 1));
+        partitions.add(year);
+    }
+}
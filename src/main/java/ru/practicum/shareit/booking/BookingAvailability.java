@@ -0,0 +1,115 @@
+package ru.practicum.shareit.booking;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.dto.BookingDtoSimple;
+import ru.practicum.shareit.datasource.PrimaryReads;
+import ru.practicum.shareit.util.TransactionHooks;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Занятость вещей в памяти: для каждой вещи хранится отсортированный набор ожидающих и подтверждённых бронирований.
+ * Таймлайн вещи поднимается из базы при первом обращении и обновляется после коммита транзакций,
+ * окончательную гарантию от пересечений даёт ограничение bookings_no_overlap. В памяти держится не больше
+ * shareit.bookings.availability-cache-size таймлайнов, вытесненный снова читается из базы при следующем обращении.
+ */
+@Component
+public class BookingAvailability {
+
+    static final List<Status> ACTIVE_STATUSES = List.of(Status.WAITING, Status.APPROVED);
+
+    private final BookingRepository bookingRepository;
+    private final PrimaryReads primaryReads;
+    private final Cache<Long, BookingTimeline> timelines;
+    // растёт до применения каждого изменения: таймлайн, загруженный параллельно с ним, в кэш не попадёт
+    private final AtomicLong generation = new AtomicLong();
+
+    public BookingAvailability(BookingRepository bookingRepository, PrimaryReads primaryReads,
+                               @Value("${shareit.bookings.availability-cache-size:10000}") long cacheSize) {
+        this.bookingRepository = bookingRepository;
+        this.primaryReads = primaryReads;
+        this.timelines = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    public boolean isFree(Long itemId, LocalDateTime start, LocalDateTime end) {
+        return !timeline(itemId).overlaps(toEpoch(start), toEpoch(end));
+    }
+
+    public void reserve(Booking booking) {
+        Long itemId = booking.getItem().getId();
+        long id = booking.getId();
+        long start = toEpoch(booking.getStart());
+        long end = toEpoch(booking.getEnd());
+        TransactionHooks.afterCommit(() -> {
+            generation.incrementAndGet();
+            BookingTimeline timeline = timelines.getIfPresent(itemId);
+            if (timeline != null) {
+                timeline.add(id, start, end, toEpoch(LocalDateTime.now()));
+            }
+        });
+    }
+
+    public void release(Booking booking) {
+        Long itemId = booking.getItem().getId();
+        long id = booking.getId();
+        TransactionHooks.afterCommit(() -> {
+            generation.incrementAndGet();
+            BookingTimeline timeline = timelines.getIfPresent(itemId);
+            if (timeline != null) {
+                timeline.remove(id);
+            }
+        });
+    }
+
+    public void evict(Long itemId) {
+        TransactionHooks.afterCommit(() -> {
+            generation.incrementAndGet();
+            timelines.invalidate(itemId);
+        });
+    }
+
+    public void evict(Collection<Long> itemIds) {
+        itemIds.forEach(this::evict);
+    }
+
+    private BookingTimeline timeline(Long itemId) {
+        BookingTimeline timeline = timelines.getIfPresent(itemId);
+        if (timeline != null) {
+            return timeline;
+        }
+        long observed = generation.get();
+        List<BookingDtoSimple> active = primaryReads.read(
+                () -> bookingRepository.findActiveIntervals(itemId, LocalDateTime.now(), ACTIVE_STATUSES));
+        long[] ids = new long[active.size()];
+        long[] starts = new long[active.size()];
+        long[] ends = new long[active.size()];
+        for (int i = 0; i < active.size(); i++) {
+            BookingDtoSimple booking = active.get(i);
+            ids[i] = booking.getId();
+            starts[i] = toEpoch(booking.getStart());
+            ends[i] = toEpoch(booking.getEnd());
+        }
+        BookingTimeline loaded = new BookingTimeline(ids, starts, ends);
+        BookingTimeline existing = timelines.asMap().putIfAbsent(itemId, loaded);
+        if (existing != null) {
+            return existing;
+        }
+        if (observed != generation.get()) {
+            // пока шло чтение, закоммитилось изменение, которого в снимке может не быть: этот вызов его использует,
+            // а следующий перечитает таймлайн из базы
+            timelines.asMap().remove(itemId, loaded);
+        }
+        return loaded;
+    }
+
+    private static long toEpoch(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+}
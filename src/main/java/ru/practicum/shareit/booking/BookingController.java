@@ -1,9 +1,15 @@
 package ru.practicum.shareit.booking;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.dto.BookingBasketCreateDto;
 import ru.practicum.shareit.booking.dto.BookingCreateDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 
@@ -26,6 +32,12 @@ public class BookingController {
         return bookingService.createBooking(booking, userId);
     }
 
+    @PostMapping(path = "/basket")
+    public List<BookingDto> createBookings(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                           @Valid @RequestBody BookingBasketCreateDto basket) {
+        return bookingService.createBookings(basket.getBookings(), userId);
+    }
+
     @PatchMapping(path = "/{bookingId}")
     public BookingDto approveBooking(@RequestHeader("X-Sharer-User-Id") Long userId,
                                      @PathVariable Long bookingId,
@@ -33,21 +45,36 @@ public class BookingController {
         return bookingService.approveBooking(bookingId, userId, approved);
     }
 
+    // события создания и подтверждения бронирований, где пользователь арендатор или владелец вещи
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBookingEvents(@RequestHeader("X-Sharer-User-Id") Long userId) {
+        return bookingService.subscribe(userId);
+    }
+
     @GetMapping(path = "/{bookingId}")
-    public BookingDto getBooking(@PathVariable Long bookingId) {
+    public BookingDto getBooking(@PathVariable Long bookingId, WebRequest request) {
+        if (request.checkNotModified(bookingService.getBookingETag(bookingId))) {
+            return null;
+        }
         return bookingService.getBooking(bookingId);
     }
 
     @GetMapping
     public List<BookingDto> getBookingsByBookerId(@RequestHeader("X-Sharer-User-Id") Long userId,
-                                                  @RequestParam(defaultValue = "ALL") TimeStatus status) {
-        return bookingService.getBookingByBookerIdAndStatus(userId, status);
+                                                  @RequestParam(defaultValue = "ALL") TimeStatus status,
+                                                  @RequestParam(required = false) Long after,
+                                                  @RequestParam(defaultValue = "100") @Positive @Max(500) int limit,
+                                                  @RequestParam(defaultValue = "false") boolean includeArchive) {
+        return bookingService.getBookingByBookerIdAndStatus(userId, status, after, limit, includeArchive);
     }
 
     @GetMapping(path = "/owner")
     public List<BookingDto> getBookingsByItemOwnerId(@RequestHeader("X-Sharer-User-Id") Long userId,
-                                                     @RequestParam(defaultValue = "ALL") TimeStatus status) {
-        return bookingService.getBookingByItemIdAndStatus(userId, status);
+                                                     @RequestParam(defaultValue = "ALL") TimeStatus status,
+                                                     @RequestParam(required = false) Long after,
+                                                     @RequestParam(defaultValue = "100") @Positive @Max(500) int limit,
+                                                     @RequestParam(defaultValue = "false") boolean includeArchive) {
+        return bookingService.getBookingByItemIdAndStatus(userId, status, after, limit, includeArchive);
     }
 
 }
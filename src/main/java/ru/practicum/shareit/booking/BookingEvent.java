@@ -0,0 +1,15 @@
+package ru.practicum.shareit.booking;
+
+import ru.practicum.shareit.booking.dto.BookingDto;
+
+/**
+ * Изменение бронирования, о котором нужно сообщить арендатору и владельцу вещи.
+ */
+public record BookingEvent(Type type, BookingDto booking, Long bookerId, Long ownerId) {
+
+    public enum Type {
+        CREATED,
+        APPROVED,
+        REJECTED
+    }
+}
@@ -0,0 +1,164 @@
+package ru.practicum.shareit.booking;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Рассылка событий бронирований подписчикам SSE.
+ * У каждого подписчика своя ограниченная очередь и свой виртуальный поток, который пишет в соединение,
+ * поэтому медленный клиент не задерживает ни транзакцию, ни остальных подписчиков.
+ * Если очередь переполнена, подписчик отключается: клиент переподключается и перечитывает бронирования запросом.
+ * У одного пользователя не больше {@code shareit.bookings.stream.max-per-user} подписок, лишняя закрывает самую старую.
+ */
+@Component
+public class BookingEventStream {
+
+    private final Map<Long, Deque<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final int bufferSize;
+    private final int maxPerUser;
+    private final Duration timeout;
+    private final Duration heartbeat;
+    private final Counter overflows;
+
+    public BookingEventStream(@Value("${shareit.bookings.stream.buffer-size:64}") int bufferSize,
+                              @Value("${shareit.bookings.stream.timeout:30m}") Duration timeout,
+                              @Value("${shareit.bookings.stream.heartbeat:15s}") Duration heartbeat,
+                              @Value("${shareit.bookings.stream.max-per-user:5}") int maxPerUser,
+                              MeterRegistry meterRegistry) {
+        this.bufferSize = bufferSize;
+        this.maxPerUser = maxPerUser;
+        this.timeout = timeout;
+        this.heartbeat = heartbeat;
+        this.overflows = Counter.builder("shareit.bookings.stream.overflows")
+                .description("Подписчики, отключённые из-за переполнения очереди")
+                .register(meterRegistry);
+        meterRegistry.gauge("shareit.bookings.stream.subscribers", subscriberCount);
+    }
+
+    public SseEmitter subscribe(Long userId) {
+        Subscriber subscriber = new Subscriber(userId, new SseEmitter(timeout.toMillis()),
+                new ArrayBlockingQueue<>(bufferSize));
+        List<Subscriber> evicted = new ArrayList<>();
+        subscribers.compute(userId, (id, deque) -> {
+            Deque<Subscriber> result = deque != null ? deque : new ConcurrentLinkedDeque<>();
+            result.addLast(subscriber);
+            while (result.size() > maxPerUser) {
+                evicted.add(result.pollFirst());
+            }
+            return result;
+        });
+        subscriberCount.incrementAndGet();
+        // закрывать можно только вне compute: remove сам меняет ту же запись
+        for (Subscriber oldest : evicted) {
+            remove(oldest);
+            oldest.emitter.complete();
+        }
+        subscriber.emitter.onCompletion(() -> remove(subscriber));
+        subscriber.emitter.onTimeout(() -> remove(subscriber));
+        subscriber.emitter.onError(e -> remove(subscriber));
+        subscriber.sender = senders.submit(() -> send(subscriber));
+        return subscriber.emitter;
+    }
+
+    // события уходят только после коммита, чтобы клиент не увидел бронирование, которого нет в базе
+    @TransactionalEventListener
+    public void onBookingEvent(BookingEvent event) {
+        publish(event.bookerId(), event);
+        if (!event.ownerId().equals(event.bookerId())) {
+            publish(event.ownerId(), event);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        subscribers.values().forEach(deque -> deque.forEach(subscriber -> subscriber.emitter.complete()));
+        senders.shutdownNow();
+    }
+
+    private void publish(Long userId, BookingEvent event) {
+        Deque<Subscriber> userSubscribers = subscribers.get(userId);
+        if (userSubscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : userSubscribers) {
+            if (!subscriber.queue.offer(event)) {
+                overflows.increment();
+                remove(subscriber);
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                BookingEvent event = subscriber.queue.poll(heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    // комментарий не даёт прокси закрыть простаивающее соединение
+                    subscriber.emitter.send(SseEmitter.event().comment("ping"));
+                } else {
+                    subscriber.emitter.send(SseEmitter.event().name(event.type().name()).data(event.booking()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | IllegalStateException e) {
+            remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (!subscriber.removed.compareAndSet(false, true)) {
+            return;
+        }
+        subscriberCount.decrementAndGet();
+        subscribers.computeIfPresent(subscriber.userId, (id, deque) -> {
+            deque.remove(subscriber);
+            return deque.isEmpty() ? null : deque;
+        });
+        Future<?> sender = subscriber.sender;
+        if (sender != null) {
+            sender.cancel(true);
+        }
+    }
+
+    private static final class Subscriber {
+
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<BookingEvent> queue;
+        private final AtomicBoolean removed = new AtomicBoolean();
+        private volatile Future<?> sender;
+
+        private Subscriber(Long userId, SseEmitter emitter, BlockingQueue<BookingEvent> queue) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+    }
+}
@@ -2,24 +2,22 @@ package ru.practicum.shareit.booking;
 
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
-import org.springframework.beans.factory.annotation.Autowired;
 import ru.practicum.shareit.booking.dto.BookingCreateDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoSimple;
-import ru.practicum.shareit.item.ItemRepository;
 import ru.practicum.shareit.user.UserMapping;
 
 @Mapper(componentModel = "spring", uses = UserMapping.class)
 public abstract class BookingMapper {
 
-    @Autowired
-    ItemRepository itemRepository;
-
-    @Mapping(target = "item", expression = "java(itemRepository.findById(bookingCreateDto.getItemId()).orElse(null))")
+    @Mapping(target = "item", ignore = true)
     public abstract Booking fromDto(BookingCreateDto bookingCreateDto);
 
     @Mapping(target = "booker", source = "booker")
     public abstract BookingDto toDto(Booking booking);
 
+    @Mapping(target = "booker", source = "booker")
+    public abstract BookingDto toDto(ArchivedBooking booking);
+
     public abstract BookingDtoSimple toDtoSimple(Booking booking);
 }
@@ -1,56 +1,100 @@
 package ru.practicum.shareit.booking;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import ru.practicum.shareit.booking.dto.BookingBoundary;
 import ru.practicum.shareit.booking.dto.BookingDtoSimple;
+import ru.practicum.shareit.booking.dto.BookingMark;
+import ru.practicum.shareit.booking.dto.BookingVersion;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface BookingRepository extends JpaRepository<Booking, Long> {
 
-    List<Booking> findAllByBookerId(Long bookerId);
+    @EntityGraph(attributePaths = "item")
+    Optional<Booking> findById(Long id);
 
-    List<Booking> findByBookerIdAndEndBeforeOrderByEndAsc(Long bookerId, LocalDateTime end);
+    @EntityGraph(attributePaths = "item")
+    Window<Booking> findByBookerIdOrderByStartAscIdAsc(Long bookerId, ScrollPosition position, Limit limit);
 
-    List<Booking> findByBookerIdAndStartAfterOrderByStartAsc(Long bookerId, LocalDateTime start);
+    @EntityGraph(attributePaths = "item")
+    Window<Booking> findByBookerIdAndEndBeforeOrderByEndAscIdAsc(Long bookerId, LocalDateTime end,
+                                                                 ScrollPosition position, Limit limit);
 
-    List<Booking> findByBookerIdAndEndAfterAndStartBeforeOrderByStartAsc(Long bookerId, LocalDateTime end, LocalDateTime start);
+    @EntityGraph(attributePaths = "item")
+    Window<Booking> findByBookerIdAndStartAfterOrderByStartAscIdAsc(Long bookerId, LocalDateTime start,
+                                                                    ScrollPosition position, Limit limit);
 
-    @Query("SELECT b FROM Booking b WHERE b.booker.id = :bookerId AND b.end > :now AND b.start < :now ORDER BY b.start ASC")
-    List<Booking> findCurrentBookingsByBooker(@Param("bookerId") Long bookerId, @Param("now") LocalDateTime now);
+    @EntityGraph(attributePaths = "item")
+    Window<Booking> findByBookerIdAndEndAfterAndStartBeforeOrderByStartAscIdAsc(Long bookerId, LocalDateTime end,
+                                                                                LocalDateTime start,
+                                                                                ScrollPosition position, Limit limit);
 
-    List<Booking> findByBookerIdAndStatusOrderByStartAsc(Long bookerId, Status status);
+    @EntityGraph(attributePaths = "item")
+    Window<Booking> findByBookerIdAndStatusOrderByStartAscIdAsc(Long bookerId, Status status,
+                                                                ScrollPosition position, Limit limit);
 
-    List<Booking> findByItemOwnerIdAndStatusOrderByStartAsc(Long bookerId, Status status);
+    @EntityGraph(attributePaths = "item")
+    Window<Booking> findByOwnerIdOrderByStartAscIdAsc(Long ownerId, ScrollPosition position, Limit limit);
 
-    List<Booking> findByItemOwnerIdOrderByStartAsc(Long itemOwnerId);
+    @EntityGraph(attributePaths = "item")
+    Window<Booking> findByOwnerIdAndEndBeforeOrderByEndAscIdAsc(Long ownerId, LocalDateTime end,
+                                                                ScrollPosition position, Limit limit);
 
-    List<Booking> findByItemOwnerIdAndEndBeforeOrderByEndAsc(Long itemOwnerId, LocalDateTime end);
+    @EntityGraph(attributePaths = "item")
+    Window<Booking> findByOwnerIdAndStartAfterOrderByStartAscIdAsc(Long ownerId, LocalDateTime start,
+                                                                   ScrollPosition position, Limit limit);
 
-    List<Booking> findByItemOwnerIdAndStartAfterOrderByStartAsc(Long itemOwnerId, LocalDateTime start);
+    @EntityGraph(attributePaths = "item")
+    Window<Booking> findByOwnerIdAndEndAfterAndStartBeforeOrderByStartAscIdAsc(Long ownerId, LocalDateTime end,
+                                                                               LocalDateTime start,
+                                                                               ScrollPosition position, Limit limit);
 
-    @Query("SELECT b FROM Booking b WHERE b.item.owner.id = :ownerId AND b.end > :now AND b.start < :now")
-    List<Booking> findCurrentBookingsByItemOwnerId(@Param("ownerId") Long bookerId, @Param("now") LocalDateTime now);
+    @EntityGraph(attributePaths = "item")
+    Window<Booking> findByOwnerIdAndStatusOrderByStartAscIdAsc(Long ownerId, Status status,
+                                                               ScrollPosition position, Limit limit);
 
-    @Query("SELECT new ru.practicum.shareit.booking.dto.BookingDtoSimple(b.id, b.start, b.end) FROM Booking b WHERE b.item.id = :itemId AND b.start > CURRENT_TIMESTAMP ORDER BY b.start ASC")
-    BookingDtoSimple findFirstByItemIdAndStartAfterNow(Long itemId);
+    @Query("SELECT new ru.practicum.shareit.booking.dto.BookingDtoSimple(b.id, b.start, b.end) FROM Booking b " +
+            "WHERE b.id = :id AND b.booker.id = :bookerId")
+    Optional<BookingDtoSimple> findSimpleByIdAndBookerId(@Param("id") Long id, @Param("bookerId") Long bookerId);
 
-    @Query("SELECT new ru.practicum.shareit.booking.dto.BookingDtoSimple(b.id, b.start, b.end) FROM Booking b WHERE b.item.id = :itemId AND b.end < CURRENT_TIMESTAMP ORDER BY b.end DESC")
-    BookingDtoSimple findFirstByItemIdAndEndBeforeNow(Long itemId);
+    @Query("SELECT new ru.practicum.shareit.booking.dto.BookingDtoSimple(b.id, b.start, b.end) FROM Booking b " +
+            "WHERE b.id = :id AND b.ownerId = :ownerId")
+    Optional<BookingDtoSimple> findSimpleByIdAndOwnerId(@Param("id") Long id, @Param("ownerId") Long ownerId);
+
+    @Query("SELECT new ru.practicum.shareit.booking.dto.BookingDtoSimple(b.id, b.start, b.end) FROM Booking b " +
+            "WHERE b.item.id = :itemId AND b.end > :now AND b.status IN :statuses ORDER BY b.start ASC")
+    List<BookingDtoSimple> findActiveIntervals(@Param("itemId") Long itemId, @Param("now") LocalDateTime now,
+                                               @Param("statuses") List<Status> statuses);
+
+    @Query("SELECT DISTINCT b.item.id FROM Booking b WHERE b.booker.id = :bookerId")
+    List<Long> findItemIdsByBookerId(@Param("bookerId") Long bookerId);
 
     Optional<Booking> findFirstByBookerIdAndItemIdOrderByStartAsc(Long bookerId, Long itemId);
 
-    @Query("SELECT b FROM Booking b " +
-            "WHERE b.item.owner.id = :ownerId AND b.end = " +
-            "(SELECT MAX(b1.end) FROM Booking b1 " +
-            "WHERE b1.item.id = b.item.id AND b1.end <= :now)")
-    List<Booking> findAllLastBookings(@Param("now") LocalDateTime now, @Param("ownerId") Long ownerId);
+    @Query(value = "SELECT DISTINCT ON (b.item_id) b.item_id AS itemId, b.id AS id, b.start AS start, b.end_time AS \"end\" " +
+            "FROM bookings b WHERE b.item_id IN (:itemIds) AND b.start > :now ORDER BY b.item_id, b.start, b.id",
+            nativeQuery = true)
+    List<BookingMark> findNextBookings(@Param("itemIds") Collection<Long> itemIds, @Param("now") LocalDateTime now);
+
+    @Query(value = "SELECT DISTINCT ON (b.item_id) b.item_id AS itemId, b.id AS id, b.start AS start, b.end_time AS \"end\" " +
+            "FROM bookings b WHERE b.item_id IN (:itemIds) AND b.end_time < :now " +
+            "ORDER BY b.item_id, b.end_time DESC, b.id DESC", nativeQuery = true)
+    List<BookingMark> findLastBookings(@Param("itemIds") Collection<Long> itemIds, @Param("now") LocalDateTime now);
+
+    @Query("SELECT new ru.practicum.shareit.booking.dto.BookingBoundary(b.item.id, MIN(b.end)) FROM Booking b " +
+            "WHERE b.item.id IN :itemIds AND b.end > :now GROUP BY b.item.id")
+    List<BookingBoundary> findNearestEnds(@Param("itemIds") Collection<Long> itemIds, @Param("now") LocalDateTime now);
 
-    @Query("SELECT b FROM Booking b " +
-            "WHERE b.item.owner.id = :ownerId AND (b.start = " +
-            "(SELECT MIN(b1.start) FROM Booking b1 WHERE b1.item.id = b.item.id AND b1.start >= :now))")
-    List<Booking> findAllNextBookings(@Param("now") LocalDateTime now, @Param("ownerId") Long ownerId);
+    @Query("SELECT new ru.practicum.shareit.booking.dto.BookingVersion(b.version, b.item.version) FROM Booking b " +
+            "WHERE b.id = :id")
+    Optional<BookingVersion> findVersionById(@Param("id") Long id);
 }
@@ -1,98 +1,328 @@
 package ru.practicum.shareit.booking;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.practicum.shareit.booking.dto.BookingCreateDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingDtoSimple;
+import ru.practicum.shareit.booking.dto.BookingVersion;
 import ru.practicum.shareit.exception.AccessDenyException;
 import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.outbox.OutboxService;
 import ru.practicum.shareit.user.User;
+import ru.practicum.shareit.user.UserDirectory;
+import ru.practicum.shareit.user.UserEvent;
 import ru.practicum.shareit.user.UserRepository;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
+@Timed("shareit.service")
 @Transactional(readOnly = true)
 @RequiredArgsConstructor
 public class BookingService {
 
+    private static final String START = "start";
+    private static final String END = "end";
+
     private final BookingRepository bookingRepository;
+    private final ArchivedBookingRepository archivedBookingRepository;
+    private final BookingArchive bookingArchive;
     private final BookingMapper bookingMapper;
     private final UserRepository userRepository;
+    private final UserDirectory userDirectory;
+    private final ItemRepository itemRepository;
+    private final BookingAvailability bookingAvailability;
+    private final ItemBookingMarks itemBookingMarks;
+    private final ItemLocks itemLocks;
+    private final BookingEventStream bookingEventStream;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OutboxService outboxService;
 
     @Transactional
     public BookingDto createBooking(BookingCreateDto createDto, Long userId) {
-        Booking booking = bookingMapper.fromDto(createDto);
+        return createBookings(List.of(createDto), userId).get(0);
+    }
+
+    // корзина проверяется целиком: вещи читаются одним запросом, бронирования уходят в базу одним batch insert
+    @Transactional
+    public List<BookingDto> createBookings(List<BookingCreateDto> createDtos, Long userId) {
         // вот эти вот 2 проверки тут только ради того, чтобы выкидывалась 404 ошибка, потому что в обычном случае
         // валидация будет выкидывать 400, если юзер или пользователь не будут найдены, но тогда тесты не проходят
-        boolean existsUser = userRepository.existsById(userId);
-        if (!existsUser) {
-            throw new NotFoundException("Пользователь не найден");
-        }
-        if (booking.getItem() == null) {
-            throw new NotFoundException("Некорректные данные");
+        checkUser(userId);
+        Set<Long> itemIds = createDtos.stream()
+                .map(BookingCreateDto::getItemId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        // до конца транзакции никто другой не бронирует эти вещи, поэтому проверка дат и запись не разъезжаются
+        itemLocks.lockForTransaction(itemIds);
+        Map<Long, Item> items = itemRepository.findAllById(itemIds).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        // пользователь уже проверен, для внешнего ключа достаточно ссылки без запроса в базу
+        User booker = userRepository.getReferenceById(userId);
+        List<Booking> bookings = new ArrayList<>();
+        for (BookingCreateDto createDto : createDtos) {
+            Booking booking = bookingMapper.fromDto(createDto);
+            booking.setItem(items.get(createDto.getItemId()));
+            checkNewBooking(booking, bookings);
+            booking.setBooker(booker);
+            bookings.add(booking);
         }
-        //
-        if (booking.getEnd().equals(booking.getStart())) {
-            throw new IllegalStateException("Срок аренды вещи не может быть нулевым");
-        }
-        boolean available = booking.getItem().getAvailable();
-        if (!available) {
-            throw new IllegalStateException("Вещь не доступна для бронирования");
+        List<Booking> saved = saveChecked(bookings);
+        List<BookingDto> result = new ArrayList<>();
+        for (Booking booking : saved) {
+            bookingAvailability.reserve(booking);
+            itemBookingMarks.invalidate(booking.getItem().getId());
+            BookingDto dto = bookingMapper.toDto(booking);
+            publish(BookingEvent.Type.CREATED, booking, dto);
+            result.add(dto);
         }
-        booking.setBooker(findUserById(userId));
-        return bookingMapper.toDto(bookingRepository.save(booking));
+        return result;
     }
 
     @Transactional
     public BookingDto approveBooking(Long id, Long userId, boolean approved) {
         Booking booking = findBooking(id);
         checkBooking(booking, userId);
+        itemLocks.lockForTransaction(List.of(booking.getItem().getId()));
+        Status previous = booking.getStatus();
         if (approved) {
+            if (previous == Status.REJECTED) {
+                checkAvailability(booking);
+            }
             booking.setStatus(Status.APPROVED);
         } else {
             booking.setStatus(Status.REJECTED);
         }
-        return bookingMapper.toDto(bookingRepository.save(booking));
+        Booking saved = saveChecked(booking);
+        // бронирование прочитано до блокировки: если статус не поменялся, UPDATE не было и @Version ничего не проверил,
+        // а прочитанный статус мог устареть, поэтому таймлайн трогаем только при настоящей смене статуса
+        if (previous != saved.getStatus()) {
+            if (saved.getStatus() == Status.REJECTED) {
+                bookingAvailability.release(saved);
+            } else if (previous == Status.REJECTED) {
+                bookingAvailability.reserve(saved);
+            }
+        }
+        BookingDto dto = bookingMapper.toDto(saved);
+        publish(saved.getStatus() == Status.APPROVED ? BookingEvent.Type.APPROVED : BookingEvent.Type.REJECTED,
+                saved, dto);
+        return dto;
     }
 
+    public SseEmitter subscribe(Long userId) {
+        checkUser(userId);
+        return bookingEventStream.subscribe(userId);
+    }
+
+    // перенесённое в архив бронирование по-прежнему доступно по своему id
     public BookingDto getBooking(Long id) {
-        return bookingMapper.toDto(findBooking(id));
+        Optional<Booking> booking = bookingRepository.findById(id);
+        if (booking.isPresent()) {
+            return bookingMapper.toDto(booking.get());
+        }
+        return archivedBookingRepository.findById(id)
+                .map(bookingMapper::toDto)
+                .orElseThrow(() -> new NotFoundException(String.format("Бронирование с id '%s' не найдено", id)));
+    }
+
+    // в ответ входит название вещи, поэтому ETag учитывает и её версию
+    public String getBookingETag(Long id) {
+        BookingVersion version = bookingRepository.findVersionById(id)
+                .or(() -> archivedBookingRepository.findVersionById(id))
+                .orElseThrow(() -> new NotFoundException(String.format("Бронирование с id '%s' не найдено", id)));
+        return "booking-" + id + "-" + version.version() + "-" + version.itemVersion();
     }
 
-    public List<BookingDto> getBookingByBookerIdAndStatus(Long bookerId, TimeStatus status) {
+    public List<BookingDto> getBookingByBookerIdAndStatus(Long bookerId, TimeStatus status, Long after, int limit,
+                                                          boolean includeArchive) {
         checkUser(bookerId);
-        List<Booking> bookings;
+        Window<Booking> bookings;
         LocalDateTime now = LocalDateTime.now();
+        Limit pageLimit = Limit.of(limit);
+        boolean archive = includeArchive && bookingArchive.isEnabled();
+        String sortProperty = status == TimeStatus.PAST ? END : START;
+        ScrollPosition position = position(after, sortProperty, archive, bookerId, false);
         bookings = switch (status) {
-            case REJECTED -> bookingRepository.findByBookerIdAndStatusOrderByStartAsc(bookerId, Status.REJECTED);
-            case ALL -> bookingRepository.findAllByBookerId(bookerId);
-            case PAST -> bookingRepository.findByBookerIdAndEndBeforeOrderByEndAsc(bookerId, now);
-            case FUTURE -> bookingRepository.findByBookerIdAndStartAfterOrderByStartAsc(bookerId, now);
-            case CURRENT -> bookingRepository.findCurrentBookingsByBooker(bookerId, now);
-            case WAITING -> bookingRepository.findByBookerIdAndStatusOrderByStartAsc(bookerId, Status.WAITING);
+            case REJECTED -> bookingRepository.findByBookerIdAndStatusOrderByStartAscIdAsc(bookerId, Status.REJECTED,
+                    position, pageLimit);
+            case ALL -> bookingRepository.findByBookerIdOrderByStartAscIdAsc(bookerId, position, pageLimit);
+            case PAST -> bookingRepository.findByBookerIdAndEndBeforeOrderByEndAscIdAsc(bookerId, now,
+                    position, pageLimit);
+            case FUTURE -> bookingRepository.findByBookerIdAndStartAfterOrderByStartAscIdAsc(bookerId, now,
+                    position, pageLimit);
+            case CURRENT -> bookingRepository.findByBookerIdAndEndAfterAndStartBeforeOrderByStartAscIdAsc(bookerId,
+                    now, now, position, pageLimit);
+            case WAITING -> bookingRepository.findByBookerIdAndStatusOrderByStartAscIdAsc(bookerId, Status.WAITING,
+                    position, pageLimit);
             default -> throw new IllegalArgumentException("Неизвестный статус " + status);
         };
-        return bookings.stream().map(bookingMapper::toDto).collect(Collectors.toList());
+        // в архиве только закончившиеся бронирования, текущие и будущие там искать незачем
+        Window<ArchivedBooking> archived = !archive ? null : switch (status) {
+            case REJECTED, WAITING -> archivedBookingRepository.findByBookerIdAndStatusOrderByStartAscIdAsc(bookerId,
+                    Status.valueOf(status.name()), position, pageLimit);
+            case ALL -> archivedBookingRepository.findByBookerIdOrderByStartAscIdAsc(bookerId, position, pageLimit);
+            case PAST -> archivedBookingRepository.findByBookerIdAndEndBeforeOrderByEndAscIdAsc(bookerId, now,
+                    position, pageLimit);
+            default -> null;
+        };
+        return merge(bookings, archived, sortProperty, limit);
     }
 
-    public List<BookingDto> getBookingByItemIdAndStatus(Long itemId, TimeStatus status) {
+    public List<BookingDto> getBookingByItemIdAndStatus(Long itemId, TimeStatus status, Long after, int limit,
+                                                        boolean includeArchive) {
         checkUser(itemId);
-        List<Booking> bookings;
+        Window<Booking> bookings;
         LocalDateTime now = LocalDateTime.now();
+        Limit pageLimit = Limit.of(limit);
+        boolean archive = includeArchive && bookingArchive.isEnabled();
+        String sortProperty = status == TimeStatus.PAST ? END : START;
+        ScrollPosition position = position(after, sortProperty, archive, itemId, true);
         bookings = switch (status) {
-            case REJECTED -> bookingRepository.findByItemOwnerIdAndStatusOrderByStartAsc(itemId, Status.REJECTED);
-            case ALL -> bookingRepository.findByItemOwnerIdOrderByStartAsc(itemId);
-            case PAST -> bookingRepository.findByItemOwnerIdAndEndBeforeOrderByEndAsc(itemId, now);
-            case FUTURE -> bookingRepository.findByItemOwnerIdAndStartAfterOrderByStartAsc(itemId, now);
-            case CURRENT -> bookingRepository.findCurrentBookingsByItemOwnerId(itemId, now);
-            case WAITING -> bookingRepository.findByItemOwnerIdAndStatusOrderByStartAsc(itemId, Status.WAITING);
+            case REJECTED -> bookingRepository.findByOwnerIdAndStatusOrderByStartAscIdAsc(itemId, Status.REJECTED,
+                    position, pageLimit);
+            case ALL -> bookingRepository.findByOwnerIdOrderByStartAscIdAsc(itemId, position, pageLimit);
+            case PAST -> bookingRepository.findByOwnerIdAndEndBeforeOrderByEndAscIdAsc(itemId, now,
+                    position, pageLimit);
+            case FUTURE -> bookingRepository.findByOwnerIdAndStartAfterOrderByStartAscIdAsc(itemId, now,
+                    position, pageLimit);
+            case CURRENT -> bookingRepository.findByOwnerIdAndEndAfterAndStartBeforeOrderByStartAscIdAsc(itemId,
+                    now, now, position, pageLimit);
+            case WAITING -> bookingRepository.findByOwnerIdAndStatusOrderByStartAscIdAsc(itemId, Status.WAITING,
+                    position, pageLimit);
             default -> throw new IllegalArgumentException("Неизвестный статус " + status);
         };
-        return bookings.stream().map(bookingMapper::toDto).collect(Collectors.toList());
+        Window<ArchivedBooking> archived = !archive ? null : switch (status) {
+            case REJECTED, WAITING -> archivedBookingRepository.findByOwnerIdAndStatusOrderByStartAscIdAsc(itemId,
+                    Status.valueOf(status.name()), position, pageLimit);
+            case ALL -> archivedBookingRepository.findByOwnerIdOrderByStartAscIdAsc(itemId, position, pageLimit);
+            case PAST -> archivedBookingRepository.findByOwnerIdAndEndBeforeOrderByEndAscIdAsc(itemId, now,
+                    position, pageLimit);
+            default -> null;
+        };
+        return merge(bookings, archived, sortProperty, limit);
+    }
+
+    // вещи удаляемого пользователя и его бронирования чужих вещей удаляются каскадом в базе,
+    // поэтому кэши по всем этим вещам сбрасываются, пока они ещё видны
+    @EventListener
+    public void onUserEvent(UserEvent event) {
+        if (event.type() != UserEvent.Type.DELETING) {
+            return;
+        }
+        Set<Long> itemIds = new HashSet<>(itemRepository.findIdsByOwnerId(event.userId()));
+        itemIds.addAll(bookingRepository.findItemIdsByBookerId(event.userId()));
+        if (bookingArchive.isEnabled()) {
+            itemIds.addAll(archivedBookingRepository.findItemIdsByBookerId(event.userId()));
+        }
+        bookingAvailability.evict(itemIds);
+        itemBookingMarks.invalidate(itemIds);
+    }
+
+    // обе выборки уже упорядочены по одному ключу, страница - первые limit записей их объединения
+    private List<BookingDto> merge(Window<Booking> bookings, Window<ArchivedBooking> archived, String sortProperty,
+                                   int limit) {
+        List<BookingDto> result = bookings.stream().map(bookingMapper::toDto).collect(Collectors.toList());
+        if (archived == null || archived.isEmpty()) {
+            return result;
+        }
+        archived.forEach(booking -> result.add(bookingMapper.toDto(booking)));
+        Comparator<BookingDto> order = Comparator.comparing(START.equals(sortProperty) ? BookingDto::getStart
+                : BookingDto::getEnd);
+        result.sort(order.thenComparing(BookingDto::getId));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    // курсор - id последнего бронирования предыдущей страницы, ключ сортировки достаём по первичному ключу;
+    // чужое бронирование не найдётся, иначе через курсор можно было бы узнать даты любой аренды
+    private ScrollPosition position(Long after, String sortProperty, boolean archive, Long userId, boolean owner) {
+        if (after == null) {
+            return ScrollPosition.keyset();
+        }
+        Optional<BookingDtoSimple> found = owner ? bookingRepository.findSimpleByIdAndOwnerId(after, userId)
+                : bookingRepository.findSimpleByIdAndBookerId(after, userId);
+        if (found.isEmpty() && archive) {
+            found = owner ? archivedBookingRepository.findSimpleByIdAndOwnerId(after, userId)
+                    : archivedBookingRepository.findSimpleByIdAndBookerId(after, userId);
+        }
+        BookingDtoSimple cursor = found
+                .orElseThrow(() -> new NotFoundException(String.format("Бронирование с id '%s' не найдено", after)));
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put(sortProperty, START.equals(sortProperty) ? cursor.getStart() : cursor.getEnd());
+        keys.put("id", cursor.getId());
+        return ScrollPosition.forward(keys);
+    }
+
+    // подписчики получат событие только после коммита, см. BookingEventStream;
+    // внешние получатели - через outbox, в той же транзакции
+    private void publish(BookingEvent.Type type, Booking booking, BookingDto dto) {
+        eventPublisher.publishEvent(new BookingEvent(type, dto, booking.getBooker().getId(),
+                booking.getItem().getOwner().getId()));
+        outboxService.append(OutboxService.BOOKING, booking.getId(), type.name(), dto);
+    }
+
+    private void checkNewBooking(Booking booking, List<Booking> basket) {
+        if (booking.getItem() == null) {
+            throw new NotFoundException("Некорректные данные");
+        }
+        if (booking.getEnd().equals(booking.getStart())) {
+            throw new IllegalStateException("Срок аренды вещи не может быть нулевым");
+        }
+        if (booking.getEnd().isBefore(booking.getStart())) {
+            throw new IllegalStateException("Окончание аренды не может быть раньше её начала");
+        }
+        boolean available = booking.getItem().getAvailable();
+        if (!available) {
+            throw new IllegalStateException("Вещь не доступна для бронирования");
+        }
+        checkAvailability(booking);
+        for (Booking other : basket) {
+            if (other.getItem().getId().equals(booking.getItem().getId())
+                    && other.getStart().isBefore(booking.getEnd()) && booking.getStart().isBefore(other.getEnd())) {
+                throw new IllegalStateException("Бронирования в корзине пересекаются");
+            }
+        }
+    }
+
+    private void checkAvailability(Booking booking) {
+        if (!bookingAvailability.isFree(booking.getItem().getId(), booking.getStart(), booking.getEnd())) {
+            throw new IllegalStateException("Вещь уже забронирована на эти даты");
+        }
+    }
+
+    // память может отставать от базы при гонках, тогда пересечение ловит ограничение bookings_no_overlap
+    private Booking saveChecked(Booking booking) {
+        return saveChecked(List.of(booking)).get(0);
+    }
+
+    private List<Booking> saveChecked(List<Booking> bookings) {
+        try {
+            return bookingRepository.saveAllAndFlush(bookings);
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalStateException("Вещь уже забронирована на эти даты");
+        }
     }
 
     private Booking findBooking(Long id) {
@@ -106,13 +336,8 @@ public class BookingService {
         }
     }
 
-    private User findUserById(Long userId) {
-        return userRepository.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь не найден"));
-    }
-
     private void checkUser(Long userId) {
-        boolean exists = userRepository.existsById(userId);
-        if (!exists) {
+        if (!userDirectory.exists(userId)) {
             throw new NotFoundException("Пользователь не найден");
         }
     }
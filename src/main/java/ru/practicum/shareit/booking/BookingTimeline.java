@@ -0,0 +1,111 @@
+package ru.practicum.shareit.booking;
+
+import java.util.Arrays;
+
+/**
+ * Отсортированные по началу интервалы активных бронирований одной вещи.
+ * Чтение идёт без блокировок по неизменяемому снимку, запись пересобирает снимок целиком.
+ */
+final class BookingTimeline {
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Массивы должны быть отсортированы по началу бронирования.
+     */
+    BookingTimeline(long[] ids, long[] starts, long[] ends) {
+        snapshot = Snapshot.of(ids, starts, ends);
+    }
+
+    /**
+     * Пересекается ли полуинтервал [start, end) хотя бы с одним бронированием.
+     */
+    boolean overlaps(long start, long end) {
+        Snapshot current = snapshot;
+        int idx = lastStartingBefore(current.starts, end);
+        return idx >= 0 && current.maxEnds[idx] > start;
+    }
+
+    int size() {
+        return snapshot.ids.length;
+    }
+
+    synchronized void add(long id, long start, long end, long now) {
+        Snapshot current = snapshot;
+        int n = current.ids.length;
+        long[] ids = new long[n + 1];
+        long[] starts = new long[n + 1];
+        long[] ends = new long[n + 1];
+        int size = 0;
+        boolean inserted = false;
+        for (int i = 0; i < n; i++) {
+            if (current.ids[i] == id) {
+                continue;
+            }
+            if (!inserted && current.starts[i] > start) {
+                ids[size] = id;
+                starts[size] = start;
+                ends[size++] = end;
+                inserted = true;
+            }
+            // заодно выбрасываем уже закончившиеся бронирования
+            if (current.ends[i] > now) {
+                ids[size] = current.ids[i];
+                starts[size] = current.starts[i];
+                ends[size++] = current.ends[i];
+            }
+        }
+        if (!inserted) {
+            ids[size] = id;
+            starts[size] = start;
+            ends[size++] = end;
+        }
+        snapshot = Snapshot.of(Arrays.copyOf(ids, size), Arrays.copyOf(starts, size), Arrays.copyOf(ends, size));
+    }
+
+    synchronized void remove(long id) {
+        Snapshot current = snapshot;
+        int n = current.ids.length;
+        for (int i = 0; i < n; i++) {
+            if (current.ids[i] == id) {
+                snapshot = Snapshot.of(without(current.ids, i), without(current.starts, i), without(current.ends, i));
+                return;
+            }
+        }
+    }
+
+    private static int lastStartingBefore(long[] starts, long end) {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < end) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private static long[] without(long[] values, int index) {
+        long[] result = new long[values.length - 1];
+        System.arraycopy(values, 0, result, 0, index);
+        System.arraycopy(values, index + 1, result, index, values.length - index - 1);
+        return result;
+    }
+
+    private record Snapshot(long[] ids, long[] starts, long[] ends, long[] maxEnds) {
+
+        // maxEnds[i] - максимальный конец среди первых i + 1 интервалов, старые данные могут пересекаться
+        static Snapshot of(long[] ids, long[] starts, long[] ends) {
+            long[] maxEnds = new long[ends.length];
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < ends.length; i++) {
+                max = Math.max(max, ends[i]);
+                maxEnds[i] = max;
+            }
+            return new Snapshot(ids, starts, ends, maxEnds);
+        }
+    }
+}
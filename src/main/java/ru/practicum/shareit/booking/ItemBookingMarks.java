@@ -0,0 +1,133 @@
+package ru.practicum.shareit.booking;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.dto.BookingBoundary;
+import ru.practicum.shareit.booking.dto.BookingDtoSimple;
+import ru.practicum.shareit.booking.dto.BookingMark;
+import ru.practicum.shareit.datasource.PrimaryReads;
+import ru.practicum.shareit.util.TransactionHooks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш последнего и ближайшего бронирования для каждой вещи.
+ * Запись живёт до момента, когда её пересчитает ход времени (начало следующей или конец текущей аренды),
+ * либо до изменения бронирований вещи.
+ */
+@Component
+public class ItemBookingMarks {
+
+    private final BookingRepository bookingRepository;
+    private final ArchivedBookingRepository archivedBookingRepository;
+    private final BookingArchive bookingArchive;
+    private final PrimaryReads primaryReads;
+    private final Cache<Long, Marks> cache;
+    // растёт при каждой инвалидации, чтобы не положить в кэш значение, прочитанное до чужого коммита
+    private final AtomicLong generation = new AtomicLong();
+
+    public ItemBookingMarks(BookingRepository bookingRepository, ArchivedBookingRepository archivedBookingRepository,
+                            BookingArchive bookingArchive, PrimaryReads primaryReads,
+                            @Value("${shareit.bookings.marks-cache-size:10000}") long cacheSize) {
+        this.bookingRepository = bookingRepository;
+        this.archivedBookingRepository = archivedBookingRepository;
+        this.bookingArchive = bookingArchive;
+        this.primaryReads = primaryReads;
+        this.cache = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    public Marks get(Long itemId) {
+        return get(List.of(itemId)).get(itemId);
+    }
+
+    public Map<Long, Marks> get(Collection<Long> itemIds) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, Marks> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long itemId : itemIds) {
+            Marks marks = cache.getIfPresent(itemId);
+            if (marks != null && marks.isValidAt(now)) {
+                result.put(itemId, marks);
+            } else {
+                missing.add(itemId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long observed = generation.get();
+            Map<Long, Marks> loaded = primaryReads.read(() -> load(missing, now));
+            if (observed == generation.get()) {
+                cache.putAll(loaded);
+            }
+            result.putAll(loaded);
+        }
+        return result;
+    }
+
+    public void invalidate(Long itemId) {
+        generation.incrementAndGet();
+        cache.invalidate(itemId);
+        TransactionHooks.afterCommit(() -> {
+            generation.incrementAndGet();
+            cache.invalidate(itemId);
+        });
+    }
+
+    public void invalidate(Collection<Long> itemIds) {
+        itemIds.forEach(this::invalidate);
+    }
+
+    private Map<Long, Marks> load(List<Long> itemIds, LocalDateTime now) {
+        Map<Long, BookingDtoSimple> next = new HashMap<>();
+        for (BookingMark mark : bookingRepository.findNextBookings(itemIds, now)) {
+            next.put(mark.getItemId(), new BookingDtoSimple(mark.getId(), mark.getStart(), mark.getEnd()));
+        }
+        Map<Long, BookingDtoSimple> last = new HashMap<>();
+        for (BookingMark mark : bookingRepository.findLastBookings(itemIds, now)) {
+            last.put(mark.getItemId(), new BookingDtoSimple(mark.getId(), mark.getStart(), mark.getEnd()));
+        }
+        // у вещи, которую давно не брали, последнее бронирование могло уехать в архив
+        List<Long> withoutLast = itemIds.stream().filter(itemId -> !last.containsKey(itemId)).toList();
+        if (bookingArchive.isEnabled() && !withoutLast.isEmpty()) {
+            for (BookingMark mark : archivedBookingRepository.findLastBookings(withoutLast)) {
+                last.put(mark.getItemId(), new BookingDtoSimple(mark.getId(), mark.getStart(), mark.getEnd()));
+            }
+        }
+        Map<Long, LocalDateTime> nearestEnds = new HashMap<>();
+        for (BookingBoundary boundary : bookingRepository.findNearestEnds(itemIds, now)) {
+            nearestEnds.put(boundary.itemId(), boundary.end());
+        }
+        Map<Long, Marks> result = new HashMap<>();
+        for (Long itemId : itemIds) {
+            BookingDtoSimple nextBooking = next.get(itemId);
+            LocalDateTime validUntil = earliest(nextBooking != null ? nextBooking.getStart() : null,
+                    nearestEnds.get(itemId));
+            result.put(itemId, new Marks(last.get(itemId), nextBooking, validUntil));
+        }
+        return result;
+    }
+
+    private static LocalDateTime earliest(LocalDateTime first, LocalDateTime second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        return first.isBefore(second) ? first : second;
+    }
+
+    public record Marks(BookingDtoSimple last, BookingDtoSimple next, LocalDateTime validUntil) {
+
+        boolean isValidAt(LocalDateTime now) {
+            return validUntil == null || now.isBefore(validUntil);
+        }
+    }
+}
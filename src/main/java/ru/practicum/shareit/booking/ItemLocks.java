@@ -0,0 +1,154 @@
+package ru.practicum.shareit.booking;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.util.TransactionHooks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Последовательная обработка бронирований одной вещи: проверка свободных дат и запись идут под блокировкой,
+ * которая держится до конца транзакции. Бронирования разных вещей не мешают друг другу.
+ * <p>
+ * Режим {@code striped} — полосы ReentrantLock в памяти процесса, подходит для одного экземпляра приложения.
+ * Режим {@code advisory} — pg_advisory_xact_lock, работает при нескольких экземплярах на одной базе.
+ * Режим {@code none} оставляет защиту только ограничению bookings_no_overlap.
+ */
+@Component
+public class ItemLocks {
+
+    public enum Mode {
+        STRIPED,
+        ADVISORY,
+        NONE
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Mode mode;
+    private final ReentrantLock[] stripes;
+    private final Duration timeout;
+    private final Timer waitTimer;
+    private final Counter contended;
+
+    public ItemLocks(JdbcTemplate jdbcTemplate,
+                     @Value("${shareit.bookings.locking:striped}") Mode mode,
+                     @Value("${shareit.bookings.lock-stripes:1024}") int stripes,
+                     @Value("${shareit.bookings.lock-timeout:5s}") Duration timeout,
+                     MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.mode = mode;
+        // степень двойки, чтобы номер полосы брался маской
+        this.stripes = new ReentrantLock[Integer.highestOneBit(Math.max(1, stripes) * 2 - 1)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.timeout = timeout;
+        this.waitTimer = Timer.builder("shareit.bookings.lock.wait")
+                .description("Ожидание блокировки вещи при бронировании")
+                .tag("mode", mode.name().toLowerCase())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.contended = Counter.builder("shareit.bookings.lock.contended")
+                .description("Блокировки вещи, которые пришлось ждать")
+                .tag("mode", mode.name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Блокирует вещи до конца текущей транзакции.
+     */
+    public void lockForTransaction(Collection<Long> itemIds) {
+        switch (mode) {
+            case STRIPED -> {
+                Runnable release = acquire(itemIds);
+                TransactionHooks.afterCompletion(release);
+            }
+            case ADVISORY -> lockAdvisory(itemIds);
+            case NONE -> {
+            }
+        }
+    }
+
+    /**
+     * Захватывает полосы в порядке возрастания номера, чтобы корзины с общими вещами не заблокировали друг друга.
+     * Возвращает действие, которое снимает блокировки; вызывать его нужно из того же потока.
+     */
+    Runnable acquire(Collection<Long> itemIds) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (Long itemId : itemIds) {
+            indexes.add(stripe(itemId));
+        }
+        List<ReentrantLock> held = new ArrayList<>(indexes.size());
+        try {
+            for (int index : indexes) {
+                lock(stripes[index]);
+                held.add(stripes[index]);
+            }
+        } catch (RuntimeException e) {
+            unlock(held);
+            throw e;
+        }
+        return () -> unlock(held);
+    }
+
+    private void lock(ReentrantLock lock) {
+        if (lock.tryLock()) {
+            return;
+        }
+        contended.increment();
+        long started = System.nanoTime();
+        try {
+            if (!lock.tryLock(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new CannotAcquireLockException("Вещь сейчас бронируется другим запросом, повторите позже");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("Ожидание блокировки вещи прервано", e);
+        } finally {
+            waitTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void lockAdvisory(Collection<Long> itemIds) {
+        for (Long itemId : new TreeSet<>(itemIds)) {
+            long started = System.nanoTime();
+            // сначала пробуем без ожидания, чтобы отличить свободную блокировку от занятой
+            Boolean acquired = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, itemId);
+            if (!Boolean.TRUE.equals(acquired)) {
+                contended.increment();
+                // таймаут ограничивает только ожидание этой блокировки, остальные запросы транзакции живут с прежним
+                String previous = jdbcTemplate.queryForObject("SELECT current_setting('lock_timeout')", String.class);
+                setLockTimeout(timeout.toMillis() + "ms");
+                jdbcTemplate.query("SELECT pg_advisory_xact_lock(?)", rs -> null, itemId);
+                setLockTimeout(previous);
+                waitTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void setLockTimeout(String value) {
+        jdbcTemplate.queryForObject("SELECT set_config('lock_timeout', ?, true)", String.class, value);
+    }
+
+    private int stripe(Long itemId) {
+        long hash = itemId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (stripes.length - 1);
+    }
+
+    private static void unlock(List<ReentrantLock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+    }
+}
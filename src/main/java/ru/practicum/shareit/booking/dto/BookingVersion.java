@@ -0,0 +1,7 @@
+package ru.practicum.shareit.booking.dto;
+
+/**
+ * Версия бронирования и версия вещи, название которой попадает в ответ.
+ */
+public record BookingVersion(Long version, Long itemVersion) {
+}
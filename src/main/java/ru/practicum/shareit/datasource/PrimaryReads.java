@@ -0,0 +1,52 @@
+package ru.practicum.shareit.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+/**
+ * Чтение с основной базы для кэшей в памяти. Кэш сбрасывается по коммитам основной базы, поэтому значение,
+ * прочитанное с отстающей реплики, пережило бы инвалидацию и отдавалось бы до вытеснения.
+ * Внутри read-only транзакции, соединение которой уже на основной базе, загрузка идёт в ней же: отдельная транзакция
+ * взяла бы второе соединение из того же пула, пока первое занято, и при исчерпании пула запросы ждали бы друг друга.
+ * Отдельная транзакция открывается, только если текущая на реплике или ещё не взяла соединение.
+ */
+@Component
+public class PrimaryReads {
+
+    private static final ThreadLocal<Boolean> REQUESTED = new ThreadLocal<>();
+
+    private final TransactionTemplate transactionTemplate;
+    private final boolean replicasEnabled;
+
+    public PrimaryReads(PlatformTransactionManager transactionManager,
+                        @Value("${shareit.datasource.replicas.enabled:false}") boolean replicasEnabled) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setReadOnly(true);
+        this.replicasEnabled = replicasEnabled;
+    }
+
+    public <T> T read(Supplier<T> loader) {
+        // пишущая транзакция и код вне транзакции и так работают с основной базой
+        if (!replicasEnabled || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || ReplicaRoutingDataSource.isCurrentTransactionOnPrimary()) {
+            return loader.get();
+        }
+        REQUESTED.set(Boolean.TRUE);
+        try {
+            return transactionTemplate.execute(status -> loader.get());
+        } finally {
+            REQUESTED.remove();
+        }
+    }
+
+    static boolean isRequested() {
+        return REQUESTED.get() != null;
+    }
+}
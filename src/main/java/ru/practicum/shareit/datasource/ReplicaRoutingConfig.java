@@ -0,0 +1,97 @@
+package ru.practicum.shareit.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Включается свойством shareit.datasource.replicas.enabled. Основная база настраивается как обычно через
+ * spring.datasource.*, реплики перечисляются в shareit.datasource.replicas.urls и используют те же учётные данные,
+ * если не заданы свои.
+ */
+@Configuration
+@ConditionalOnProperty(name = "shareit.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    private final List<HikariDataSource> replicaPools = new ArrayList<>();
+    // отдельный поток: проверка недоступной реплики не должна задерживать общие фоновые задачи
+    private final ScheduledExecutorService healthChecks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-health");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, DataSourceProperties properties,
+                                 @Value("${shareit.datasource.replicas.urls}") List<String> urls,
+                                 @Value("${shareit.datasource.replicas.username:#{null}}") String username,
+                                 @Value("${shareit.datasource.replicas.password:#{null}}") String password,
+                                 @Value("${shareit.datasource.replicas.pool-size:10}") int poolSize,
+                                 @Value("${shareit.datasource.replicas.sticky-window:5s}") Duration stickyWindow,
+                                 @Value("${shareit.datasource.replicas.connection-timeout:500ms}")
+                                 Duration connectionTimeout,
+                                 @Value("${shareit.datasource.replicas.validation-timeout:250ms}")
+                                 Duration validationTimeout,
+                                 @Value("${shareit.datasource.replicas.health-interval:PT5S}") Duration healthInterval,
+                                 MeterRegistry meterRegistry) {
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(urls.get(i));
+            replica.setUsername(username != null ? username : properties.determineUsername());
+            replica.setPassword(password != null ? password : properties.determinePassword());
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            // запрос, попавший на недоступную реплику, ждёт соединения не дольше этого и уходит на основную базу
+            replica.setConnectionTimeout(connectionTimeout.toMillis());
+            replica.setValidationTimeout(validationTimeout.toMillis());
+            // реплика может быть недоступна при старте, приложение всё равно должно подняться на основной базе
+            replica.setInitializationFailTimeout(-1);
+            replicaPools.add(replica);
+        }
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(primaryDataSource,
+                List.copyOf(replicaPools), stickyWindow, meterRegistry);
+        routingDataSource.afterPropertiesSet();
+        int checkTimeoutSeconds = (int) Math.max(1, validationTimeout.toSeconds());
+        healthChecks.scheduleWithFixedDelay(() -> routingDataSource.checkReplicas(checkTimeoutSeconds),
+                healthInterval.toMillis(), healthInterval.toMillis(), TimeUnit.MILLISECONDS);
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Bean
+    public RoutingContext routingContext() {
+        return new RoutingContext();
+    }
+
+    @PreDestroy
+    public void closeReplicas() {
+        healthChecks.shutdownNow();
+        replicaPools.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,180 @@
+package ru.practicum.shareit.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.util.TransactionHooks;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Отправляет read-only транзакции на реплики, остальное на основную базу.
+ * Реплика, на которой не удалось получить соединение или не прошла проверка, выводится из ротации
+ * до следующей успешной проверки. Пользователь, только что писавший в базу, читает с основной базы,
+ * пока не пройдёт sticky-window после коммита, чтобы не увидеть реплику, которая ещё не догнала его изменения.
+ * Загрузки кэшей через {@link PrimaryReads} тоже идут на основную базу.
+ * <p>
+ * Решение о маршруте принимается при получении соединения, поэтому источник нужно оборачивать
+ * в LazyConnectionDataSourceProxy: тогда соединение берётся уже после того, как транзакция отметила себя read-only.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+    // куда ушло соединение текущей транзакции; вложенная транзакция при завершении возвращает значение внешней
+    private static final ThreadLocal<Object> ROUTE = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final AtomicReferenceArray<Boolean> healthy;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Cache<Long, Boolean> recentWriters;
+    private final Counter primaryReads;
+    private final Counter replicaReads;
+    private final Counter fallbacks;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration stickyWindow,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.healthy = new AtomicReferenceArray<>(replicas.size());
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            healthy.set(i, true);
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        this.recentWriters = Caffeine.newBuilder().expireAfterWrite(stickyWindow).build();
+        this.primaryReads = readCounter(meterRegistry, PRIMARY);
+        this.replicaReads = readCounter(meterRegistry, "replica");
+        this.fallbacks = Counter.builder("shareit.datasource.replica.fallbacks")
+                .description("Чтения, ушедшие на основную базу из-за недоступной реплики")
+                .register(meterRegistry);
+        meterRegistry.gauge("shareit.datasource.replicas.healthy", this, ReplicaRoutingDataSource::healthyCount);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Long userId = RoutingContext.currentUser();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // откатившаяся запись ничего не изменила, и читать после неё с основной базы незачем
+            if (userId != null) {
+                TransactionHooks.afterCommit(() -> recentWriters.put(userId, Boolean.TRUE));
+            }
+            return PRIMARY;
+        }
+        if (PrimaryReads.isRequested() || userId != null && recentWriters.getIfPresent(userId) != null) {
+            return PRIMARY;
+        }
+        Integer replica = pickReplica();
+        if (replica == null) {
+            fallbacks.increment();
+            return PRIMARY;
+        }
+        return replica;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (key instanceof Integer index) {
+            try {
+                Connection connection = replicas.get(index).getConnection();
+                replicaReads.increment();
+                remember(index);
+                return connection;
+            } catch (SQLException e) {
+                healthy.set(index, false);
+                fallbacks.increment();
+            }
+        }
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryReads.increment();
+        }
+        Connection connection = primary.getConnection();
+        remember(PRIMARY);
+        return connection;
+    }
+
+    /**
+     * Соединение текущей транзакции уже взято с основной базы.
+     */
+    static boolean isCurrentTransactionOnPrimary() {
+        return PRIMARY.equals(ROUTE.get());
+    }
+
+    private static void remember(Object route) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Object outer = ROUTE.get();
+        ROUTE.set(route);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (outer != null) {
+                    ROUTE.set(outer);
+                } else {
+                    ROUTE.remove();
+                }
+            }
+        });
+    }
+
+    /**
+     * Проверяет реплики и возвращает в ротацию те, что снова отвечают.
+     */
+    public void checkReplicas(int timeoutSeconds) {
+        for (int i = 0; i < replicas.size(); i++) {
+            boolean valid;
+            try (Connection connection = replicas.get(i).getConnection()) {
+                valid = connection.isValid(timeoutSeconds);
+            } catch (SQLException e) {
+                valid = false;
+            }
+            healthy.set(i, valid);
+        }
+    }
+
+    int healthyCount() {
+        int count = 0;
+        for (int i = 0; i < healthy.length(); i++) {
+            if (healthy.get(i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Integer pickReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            if (healthy.get(index)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private static Counter readCounter(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("shareit.datasource.reads")
+                .description("Read-only транзакции по месту выполнения")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+}
@@ -2,12 +2,28 @@ package ru.practicum.shareit.item;
 
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.practicum.shareit.item.dto.LatestComment;
 import ru.practicum.shareit.item.model.Comment;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
 
     @EntityGraph(attributePaths = "author")
     List<Comment> findByItemIdOrderByCreatedDesc(Long itemId);
+
+    boolean existsByItemIdAndAuthorId(Long itemId, Long authorId);
+
+    // по limit последних отзывов на каждую вещь и их общее число одним запросом, без выборки всех отзывов в память
+    @Query(value = "SELECT c.item_id AS itemId, c.id AS id, c.text AS text, u.name AS authorName, " +
+            "CAST(c.created AS timestamp) AS created, c.total AS total " +
+            "FROM (SELECT cm.id, cm.item_id, cm.user_id, cm.text, cm.created, " +
+            "ROW_NUMBER() OVER (PARTITION BY cm.item_id ORDER BY cm.created DESC, cm.id DESC) AS rn, " +
+            "COUNT(*) OVER (PARTITION BY cm.item_id) AS total " +
+            "FROM comments cm WHERE cm.item_id IN (:itemIds)) c " +
+            "JOIN users u ON u.id = c.user_id WHERE c.rn <= :limit ORDER BY c.item_id, c.rn", nativeQuery = true)
+    List<LatestComment> findLatestByItemIds(@Param("itemIds") Collection<Long> itemIds, @Param("limit") int limit);
 }
@@ -0,0 +1,196 @@
+package ru.practicum.shareit.item;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.exception.AlreadyExistsException;
+import ru.practicum.shareit.item.dto.CommentDto;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отложенная запись отзывов: проверенный отзыв подтверждается сразу, а в базу уходит пачкой по расписанию.
+ * Пока отзыв не записан, автор видит его в списке отзывов вещи.
+ */
+@Slf4j
+@Component
+public class CommentWriteBehind {
+
+    // пачка уходит одним insert из массивов: batchUpdate при reWriteBatchedInserts не сообщает число строк,
+    // а RETURNING показывает, какие отзывы записались, а какие пропущены по unique_item_user
+    private static final String INSERT = "INSERT INTO comments (text, item_id, user_id, created) "
+            + "SELECT * FROM unnest(?, ?, ?, ?) ON CONFLICT DO NOTHING RETURNING item_id, user_id";
+    private static final String BUMP_ITEM_VERSION = "UPDATE items SET version = version + 1 WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final BlockingQueue<PendingComment> queue;
+    private final Map<Key, PendingComment> pending = new ConcurrentHashMap<>();
+    private final Counter dropped;
+    private final Counter skipped;
+
+    public CommentWriteBehind(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                              @Value("${shareit.comments.write-behind.enabled:false}") boolean enabled,
+                              @Value("${shareit.comments.write-behind.queue-size:10000}") int queueSize,
+                              @Value("${shareit.comments.write-behind.batch-size:500}") int batchSize,
+                              MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.dropped = Counter.builder("shareit.comments.write-behind.dropped")
+                .description("Отзывы из очереди, которые не удалось записать")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("shareit.comments.write-behind.skipped")
+                .description("Отзывы из очереди, которые не записались, потому что отзыв автора на вещь уже есть")
+                .register(meterRegistry);
+        meterRegistry.gauge("shareit.comments.write-behind.queue", queue, BlockingQueue::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ставит отзыв в очередь. Возвращает пустой результат, если очередь заполнена и отзыв нужно записать сразу.
+     */
+    public Optional<CommentDto> enqueue(Long itemId, Long userId, String authorName, String text) {
+        Key key = new Key(itemId, userId);
+        PendingComment comment = new PendingComment(key, text, authorName, Instant.now());
+        if (pending.putIfAbsent(key, comment) != null) {
+            throw new AlreadyExistsException("Пользователь уже оставил отзыв на эту вещь");
+        }
+        if (!queue.offer(comment)) {
+            pending.remove(key);
+            return Optional.empty();
+        }
+        return Optional.of(comment.toDto());
+    }
+
+    public List<CommentDto> pendingFor(Long itemId, Long userId) {
+        PendingComment comment = pending.get(new Key(itemId, userId));
+        return comment != null ? List.of(comment.toDto()) : List.of();
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.comments.write-behind.flush-interval:PT0.2S}")
+    public void flush() {
+        List<PendingComment> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.forEach(comment -> pending.remove(comment.key()));
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    private void write(List<PendingComment> batch) {
+        batch.sort(Comparator.comparing(PendingComment::created));
+        Set<Key> inserted = new HashSet<>();
+        Set<Key> failed = new HashSet<>();
+        try {
+            inserted.addAll(insertAndBump(batch));
+        } catch (DataAccessException e) {
+            // пачка не прошла целиком (например, вещь уже удалили), пишем по одному и отбрасываем только сбойные
+            for (PendingComment comment : batch) {
+                try {
+                    inserted.addAll(insertAndBump(List.of(comment)));
+                } catch (DataAccessException rowError) {
+                    dropped.increment();
+                    failed.add(comment.key());
+                }
+            }
+        }
+        for (PendingComment comment : batch) {
+            if (!inserted.contains(comment.key()) && !failed.contains(comment.key())) {
+                // автору уже ответили 202, но отзыв на эту вещь записался раньше другим путём
+                skipped.increment();
+                log.warn("Отзыв пользователя {} на вещь {} не записан: отзыв уже есть", comment.key().userId(),
+                        comment.key().itemId());
+            }
+        }
+    }
+
+    // отзывы входят в ответ по вещи, поэтому в той же транзакции меняют её версию и ETag: иначе сбой между
+    // записью и сменой версии оставил бы клиентам 304 со старыми отзывами. Вещи идут по порядку id,
+    // чтобы не взаимоблокироваться с изменением вещи, которое держит её строку
+    private List<Key> insertAndBump(List<PendingComment> comments) {
+        return transactionTemplate.execute(status -> {
+            List<Key> inserted = insert(comments);
+            List<Object[]> items = inserted.stream().map(Key::itemId).distinct().sorted()
+                    .map(itemId -> new Object[]{itemId}).toList();
+            jdbcTemplate.batchUpdate(BUMP_ITEM_VERSION, items);
+            return inserted;
+        });
+    }
+
+    private List<Key> insert(List<PendingComment> comments) {
+        return jdbcTemplate.query(connection -> prepareInsert(connection, comments),
+                (rs, rowNum) -> new Key(rs.getLong("item_id"), rs.getLong("user_id")));
+    }
+
+    private static PreparedStatement prepareInsert(Connection connection, List<PendingComment> comments)
+            throws SQLException {
+        int size = comments.size();
+        Object[] texts = new Object[size];
+        Object[] itemIds = new Object[size];
+        Object[] userIds = new Object[size];
+        Object[] created = new Object[size];
+        for (int i = 0; i < size; i++) {
+            PendingComment comment = comments.get(i);
+            texts[i] = comment.text();
+            itemIds[i] = comment.key().itemId();
+            userIds[i] = comment.key().userId();
+            // created - timestamp без зоны, и JPA хранит в нём время UTC; Timestamp сдвинулся бы на зону JVM
+            created[i] = LocalDateTime.ofInstant(comment.created(), ZoneOffset.UTC);
+        }
+        PreparedStatement statement = connection.prepareStatement(INSERT);
+        statement.setArray(1, connection.createArrayOf("varchar", texts));
+        statement.setArray(2, connection.createArrayOf("bigint", itemIds));
+        statement.setArray(3, connection.createArrayOf("bigint", userIds));
+        statement.setArray(4, connection.createArrayOf("timestamp", created));
+        return statement;
+    }
+
+    private record Key(Long itemId, Long userId) {
+    }
+
+    private record PendingComment(Key key, String text, String authorName, Instant created) {
+
+        CommentDto toDto() {
+            CommentDto dto = new CommentDto();
+            dto.setText(text);
+            dto.setAuthorName(authorName);
+            dto.setCreated(created);
+            return dto;
+        }
+    }
+}
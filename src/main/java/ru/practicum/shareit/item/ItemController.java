@@ -1,9 +1,14 @@
 package ru.practicum.shareit.item;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.practicum.shareit.item.dto.*;
 
 import java.util.List;
@@ -14,17 +19,29 @@ import java.util.List;
 @RestController
 @RequestMapping("/items")
 @RequiredArgsConstructor
+@Validated
 public class ItemController {
 
     private final ItemService itemService;
 
+    // при совпадении If-None-Match отвечаем 304, не загружая вещи с отзывами и бронированиями
     @GetMapping
-    public List<ItemDtoWithBookings> getItems(@RequestHeader("X-Sharer-User-Id") Long userId) {
-        return itemService.getItemsByOwnerId(userId);
+    public List<ItemDtoWithBookings> getItems(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                              @RequestParam(required = false) Long after,
+                                              @RequestParam(defaultValue = "20") @Positive @Max(100) int limit,
+                                              WebRequest request) {
+        if (request.checkNotModified(itemService.getItemsByOwnerIdETag(userId, after, limit))) {
+            return null;
+        }
+        return itemService.getItemsByOwnerId(userId, after, limit);
     }
 
     @GetMapping(path = "/{itemId}")
-    public ItemDtoWithBookings getItem(@PathVariable("itemId") Long itemId, @RequestHeader("X-Sharer-User-Id") Long userId) {
+    public ItemDtoWithBookings getItem(@PathVariable("itemId") Long itemId, @RequestHeader("X-Sharer-User-Id") Long userId,
+                                       WebRequest request) {
+        if (request.checkNotModified(itemService.getItemETag(itemId, userId))) {
+            return null;
+        }
         return itemService.getItem(itemId, userId);
     }
 
@@ -48,20 +65,24 @@ public class ItemController {
     }
 
     @GetMapping("/search")
-    public List<ItemDto> search(@RequestParam String text) {
-        return itemService.getItemsByText(text);
+    public List<ItemDto> search(@RequestParam String text,
+                                @RequestParam(defaultValue = "100") @Positive @Max(500) int limit,
+                                @RequestParam(defaultValue = "false") boolean typeahead) {
+        return itemService.getItemsByText(text, limit, typeahead);
     }
 
+    // отзыв без id принят в очередь на отложенную запись, поэтому 202 вместо 201
     @PostMapping("/{itemId}/comment")
-    @ResponseStatus(HttpStatus.CREATED)
-    public CommentDto postComment(@PathVariable Long itemId,
-                                  @RequestHeader("X-Sharer-User-Id") Long userId,
-                                  @RequestBody CommentCreateDto text) {
-        return itemService.postComment(text, userId, itemId);
+    public ResponseEntity<CommentDto> postComment(@PathVariable Long itemId,
+                                                  @RequestHeader("X-Sharer-User-Id") Long userId,
+                                                  @RequestBody CommentCreateDto text) {
+        CommentDto comment = itemService.postComment(text, userId, itemId);
+        return ResponseEntity.status(comment.getId() != null ? HttpStatus.CREATED : HttpStatus.ACCEPTED).body(comment);
     }
 
     @GetMapping("/{itemId}/comment")
-    public List<CommentDto> getComments(@PathVariable Long itemId) {
-        return itemService.getCommentsByItemId(itemId);
+    public List<CommentDto> getComments(@PathVariable Long itemId,
+                                        @RequestHeader(value = "X-Sharer-User-Id", required = false) Long userId) {
+        return itemService.getCommentsByItemId(itemId, userId);
     }
 }
@@ -2,26 +2,33 @@ package ru.practicum.shareit.item;
 
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
-import ru.practicum.shareit.booking.BookingMapper;
 import ru.practicum.shareit.item.dto.*;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.dto.UserSummary;
 
-@Mapper(componentModel = "spring", uses = BookingMapper.class)
+@Mapper(componentModel = "spring")
 public interface ItemMapping {
 
     Item fromDto(ItemCreateDto item);
 
     Item fromUpdateDto(ItemUpdateDto item);
 
+    @Mapping(target = "requestId", source = "request.id")
     ItemDto toDto(Item item);
 
-    ItemDtoSimple toDtoSimple(Item item);
+    @Mapping(target = "available", constant = "true")
+    @Mapping(target = "comments", ignore = true)
+    ItemDto toDto(ItemSuggestion suggestion);
 
-    @Mapping(target = "nextBooking", source = "nextBooking")
-    @Mapping(target = "lastBooking", source = "lastBooking")
-    ItemDtoWithBookings toDtoWithBookings(Item item);
+    ItemDtoSimple toDtoSimple(Item item);
 
     @Mapping(target = "authorName", expression = "java(comment.getAuthor().getName())")
     CommentDto toDtoComment(Comment comment);
+
+    @Mapping(target = "id", source = "comment.id")
+    @Mapping(target = "authorName", source = "author.name")
+    CommentDto toDtoComment(Comment comment, UserSummary author);
+
+    CommentDto toDtoComment(LatestComment comment);
 }
@@ -1,23 +1,72 @@
 package ru.practicum.shareit.item;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import ru.practicum.shareit.item.dto.ItemSuggestion;
+import ru.practicum.shareit.item.dto.ItemVersion;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.request.dto.ItemAnswerDto;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface ItemRepository extends JpaRepository<Item, Long> {
 
-    @EntityGraph(attributePaths = "comments")
-    List<Item> findAllByOwnerId(@Param("ownerId") Long ownerId);
+    // отзывы сюда не подтягиваются: у владельца могут быть тысячи вещей, последние отзывы читаются отдельно
+    Window<Item> findByOwnerIdOrderByIdAsc(Long ownerId, ScrollPosition position, Limit limit);
 
-    @Query("SELECT i FROM Item i WHERE (LOWER(i.name) LIKE LOWER(CONCAT('%', :text, '%')) " +
-            "OR LOWER(i.description) LIKE LOWER(CONCAT('%', :text, '%'))) AND i.available = true")
-    List<Item> findByText(@Param("text") String text);
+    // поиск идёт по частичным trigram-индексам из V7, поэтому выражения должны совпадать с индексными
+    @Query(value = "SELECT * FROM items i WHERE i.available = true " +
+            "AND (LOWER(i.name) LIKE '%' || LOWER(:text) || '%' OR LOWER(i.description) LIKE '%' || LOWER(:text) || '%') " +
+            "ORDER BY similarity(LOWER(i.name), LOWER(:text)) DESC, " +
+            "similarity(LOWER(i.description), LOWER(:text)) DESC, i.id " +
+            "LIMIT :limit", nativeQuery = true)
+    List<Item> findByText(@Param("text") String text, @Param("limit") int limit);
+
+    @Query("SELECT new ru.practicum.shareit.item.dto.ItemSuggestion(i.id, i.name, i.description, i.request.id) " +
+            "FROM Item i WHERE i.available = TRUE")
+    List<ItemSuggestion> findAllSuggestions();
 
     Optional<Item> findById(Long id);
 
+    // версию вещи поднимают и отзывы в обход сущности, под блокировкой строки изменение вещи не упадёт на @Version
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Item> findForUpdateById(Long id);
+
+    @Query("SELECT i.id FROM Item i WHERE i.owner.id = :ownerId")
+    List<Long> findIdsByOwnerId(@Param("ownerId") Long ownerId);
+
+    @EntityGraph(attributePaths = {"comments", "comments.author"})
+    Optional<Item> findWithCommentsById(Long id);
+
+    @Query("SELECT new ru.practicum.shareit.request.dto.ItemAnswerDto(i.request.id, i.id, i.name, i.owner.id) " +
+            "FROM Item i WHERE i.request.id IN :requestIds ORDER BY i.id")
+    List<ItemAnswerDto> findAnswersByRequestIds(@Param("requestIds") Collection<Long> requestIds);
+
+    @Query("SELECT new ru.practicum.shareit.item.dto.ItemVersion(i.id, i.owner.id, i.version) FROM Item i WHERE i.id = :id")
+    Optional<ItemVersion> findVersionById(@Param("id") Long id);
+
+    @Query("SELECT new ru.practicum.shareit.item.dto.ItemVersion(i.id, i.owner.id, i.version) FROM Item i " +
+            "WHERE i.owner.id = :ownerId AND i.id > :after ORDER BY i.id")
+    List<ItemVersion> findVersionsByOwnerId(@Param("ownerId") Long ownerId, @Param("after") Long after, Limit limit);
+
+    // отзывы входят в ответ по вещи, поэтому новый отзыв меняет и её версию
+    @Modifying
+    @Query("UPDATE Item i SET i.version = i.version + 1 WHERE i.id = :id")
+    void incrementVersion(@Param("id") Long id);
+
+    // в отзывах показывается имя автора, поэтому его смена или удаление автора меняют версии вещей с его отзывами
+    @Modifying
+    @Query("UPDATE Item i SET i.version = i.version + 1 WHERE i.id IN "
+            + "(SELECT c.item.id FROM Comment c WHERE c.author.id = :authorId)")
+    void incrementVersionsByCommentAuthor(@Param("authorId") Long authorId);
 }
@@ -1,27 +1,44 @@
 package ru.practicum.shareit.item;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.ArchivedBookingRepository;
 import ru.practicum.shareit.booking.Booking;
-import ru.practicum.shareit.booking.BookingMapper;
+import ru.practicum.shareit.booking.BookingArchive;
+import ru.practicum.shareit.booking.BookingAvailability;
 import ru.practicum.shareit.booking.BookingRepository;
-import ru.practicum.shareit.booking.dto.BookingDtoSimple;
+import ru.practicum.shareit.booking.ItemBookingMarks;
 import ru.practicum.shareit.exception.AccessDenyException;
+import ru.practicum.shareit.exception.AlreadyExistsException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.item.dto.*;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.outbox.OutboxService;
+import ru.practicum.shareit.request.ItemRequestRepository;
 import ru.practicum.shareit.user.User;
+import ru.practicum.shareit.user.UserDirectory;
+import ru.practicum.shareit.user.UserEvent;
 import ru.practicum.shareit.user.UserRepository;
+import ru.practicum.shareit.user.dto.UserSummary;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
 
 @Service
+@Timed("shareit.service")
 @RequiredArgsConstructor
 @Transactional
 public class ItemService {
@@ -29,13 +46,24 @@ public class ItemService {
     private final ItemRepository itemRepository;
     private final ItemMapping itemMapping;
     private final UserRepository userRepository;
+    private final UserDirectory userDirectory;
     private final BookingRepository bookingRepository;
+    private final ArchivedBookingRepository archivedBookingRepository;
+    private final BookingArchive bookingArchive;
     private final CommentRepository commentRepository;
-    private final BookingMapper bookingMapper;
+    private final ItemRequestRepository itemRequestRepository;
+    private final BookingAvailability bookingAvailability;
+    private final ItemBookingMarks itemBookingMarks;
+    private final CommentWriteBehind commentWriteBehind;
+    private final ItemTypeahead itemTypeahead;
+    private final OutboxService outboxService;
+
+    @Value("${shareit.items.latest-comments:10}")
+    private int latestComments;
 
     @Transactional(readOnly = true)
     public ItemDtoWithBookings getItem(Long id, Long userId) {
-        Item item = findItemById(id);
+        Item item = itemRepository.findWithCommentsById(id).orElseThrow(() -> new NotFoundException("Вещь не найдена"));
         ItemDtoWithBookings dto = new ItemDtoWithBookings();
         // просто по приколу, здесь можно было также сделать через маппер и join fetch
         dto.setId(id);
@@ -46,37 +74,93 @@ public class ItemService {
             dto.setRequestId(item.getRequest().getId());
         }
         dto.setComments(item.getComments().stream().map(itemMapping::toDtoComment).toList());
+        dto.setCommentCount((long) item.getComments().size());
         if (item.getOwner().getId().equals(userId)) {
-            dto.setLastBooking(bookingRepository.findFirstByItemIdAndEndBeforeNow(id));
-            dto.setNextBooking(bookingRepository.findFirstByItemIdAndStartAfterNow(id));
+            ItemBookingMarks.Marks marks = itemBookingMarks.get(id);
+            dto.setLastBooking(marks.last());
+            dto.setNextBooking(marks.next());
         }
         return dto;
     }
 
+    /**
+     * ETag ответа getItem без загрузки вещи с отзывами: версия вещи, а для владельца ещё и текущие бронирования
+     * из кэша ItemBookingMarks.
+     */
     @Transactional(readOnly = true)
-    public List<ItemDtoWithBookings> getItemsByOwnerId(Long ownerId) {
-        List<Item> items = itemRepository.findAllByOwnerId(ownerId);
-        LocalDateTime now = LocalDateTime.now();
-        Map<Long, BookingDtoSimple> nextBookings = bookingRepository.findAllNextBookings(now, ownerId).stream().collect(Collectors.toMap(booking -> booking.getItem().getId(), bookingMapper::toDtoSimple));
-        Map<Long, BookingDtoSimple> lastBookings = bookingRepository.findAllLastBookings(now, ownerId).stream().collect(Collectors.toMap(booking -> booking.getItem().getId(), bookingMapper::toDtoSimple));
-        return items.stream().map(item -> new ItemDtoWithBookings(item.getId(),
-                        item.getName(), item.getDescription(), item.getAvailable(),
-                        item.getRequest() != null ? item.getRequest().getId() : null,
-                        nextBookings.get(item.getId()),
-                        lastBookings.get(item.getId()),
-                        item.getComments().stream().map(itemMapping::toDtoComment).toList()))
-                .toList();
+    public String getItemETag(Long id, Long userId) {
+        ItemVersion version = itemRepository.findVersionById(id).orElseThrow(() -> new NotFoundException("Вещь не найдена"));
+        StringBuilder etag = new StringBuilder("item-").append(id).append('-').append(version.version());
+        if (version.ownerId().equals(userId)) {
+            appendMarks(etag, itemBookingMarks.get(id));
+        }
+        return etag.toString();
+    }
+
+    @Transactional(readOnly = true)
+    public String getItemsByOwnerIdETag(Long ownerId, Long after, int limit) {
+        List<ItemVersion> versions = itemRepository.findVersionsByOwnerId(ownerId, after != null ? after : 0L,
+                Limit.of(limit));
+        Map<Long, ItemBookingMarks.Marks> marks = itemBookingMarks.get(versions.stream().map(ItemVersion::id).toList());
+        StringBuilder state = new StringBuilder();
+        for (ItemVersion version : versions) {
+            state.append(version.id()).append(':').append(version.version());
+            appendMarks(state, marks.get(version.id()));
+            state.append(';');
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(state.toString().getBytes(StandardCharsets.UTF_8));
+        return "items-" + ownerId + "-" + versions.size() + "-" + Long.toHexString(checksum.getValue());
+    }
+
+    private static void appendMarks(StringBuilder etag, ItemBookingMarks.Marks marks) {
+        etag.append("-l").append(marks.last() != null ? marks.last().getId() : 0)
+                .append("-n").append(marks.next() != null ? marks.next().getId() : 0);
+    }
+
+    // страница вещей по возрастанию id, курсор - id последней вещи предыдущей страницы;
+    // к каждой вещи только latestComments последних отзывов и их общее число
+    @Transactional(readOnly = true)
+    public List<ItemDtoWithBookings> getItemsByOwnerId(Long ownerId, Long after, int limit) {
+        ScrollPosition position = after == null ? ScrollPosition.keyset() : ScrollPosition.forward(Map.of("id", after));
+        List<Item> items = itemRepository.findByOwnerIdOrderByIdAsc(ownerId, position, Limit.of(limit)).getContent();
+        if (items.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = items.stream().map(Item::getId).toList();
+        Map<Long, ItemBookingMarks.Marks> marks = itemBookingMarks.get(ids);
+        Map<Long, List<LatestComment>> comments = commentRepository.findLatestByItemIds(ids, latestComments).stream()
+                .collect(Collectors.groupingBy(LatestComment::getItemId));
+        return items.stream().map(item -> {
+            List<LatestComment> latest = comments.getOrDefault(item.getId(), List.of());
+            return new ItemDtoWithBookings(item.getId(),
+                    item.getName(), item.getDescription(), item.getAvailable(),
+                    item.getRequest() != null ? item.getRequest().getId() : null,
+                    marks.get(item.getId()).next(),
+                    marks.get(item.getId()).last(),
+                    latest.stream().map(itemMapping::toDtoComment).toList(),
+                    latest.isEmpty() ? 0L : latest.get(0).getTotal());
+        }).toList();
     }
 
     public ItemDto createItem(ItemCreateDto itemDto, Long ownerId) {
         Item item = itemMapping.fromDto(itemDto);
-        User owner = findUserById(ownerId);
-        item.setOwner(owner);
-        return itemMapping.toDto(itemRepository.save(item));
+        item.setOwner(findUserById(ownerId));
+        if (itemDto.getRequestId() != null) {
+            if (!itemRequestRepository.existsById(itemDto.getRequestId())) {
+                throw new NotFoundException("Запрос не найден");
+            }
+            item.setRequest(itemRequestRepository.getReferenceById(itemDto.getRequestId()));
+        }
+        Item saved = itemRepository.save(item);
+        itemTypeahead.update(saved);
+        ItemDto dto = itemMapping.toDto(saved);
+        outboxService.append(OutboxService.ITEM, saved.getId(), "CREATED", dto);
+        return dto;
     }
 
     public ItemDto updateItem(Long id, ItemUpdateDto itemUpdateDto, Long ownerId) {
-        Item item = findItemById(id);
+        Item item = itemRepository.findForUpdateById(id).orElseThrow(() -> new NotFoundException("Вещь не найдена"));
         checkItem(item, ownerId);
         if (itemUpdateDto.getAvailable() != null && !itemUpdateDto.getAvailable().equals(item.getAvailable())) {
             item.setAvailable(itemUpdateDto.getAvailable());
@@ -87,40 +171,97 @@ public class ItemService {
         if (itemUpdateDto.getDescription() != null && !itemUpdateDto.getDescription().equals(item.getDescription())) {
             item.setDescription(itemUpdateDto.getDescription());
         }
-        return itemMapping.toDto(itemRepository.save(item));
+        Item saved = itemRepository.save(item);
+        itemTypeahead.update(saved);
+        ItemDto dto = itemMapping.toDto(saved);
+        outboxService.append(OutboxService.ITEM, saved.getId(), "UPDATED", dto);
+        return dto;
     }
 
     public void deleteItem(Long id, Long ownerId) {
         Item item = findItemById(id);
         checkItem(item, ownerId);
         itemRepository.delete(item);
+        bookingAvailability.evict(id);
+        itemBookingMarks.invalidate(id);
+        itemTypeahead.remove(id);
+        outboxService.append(OutboxService.ITEM, id, "DELETED", itemMapping.toDto(item));
     }
 
+    // typeahead - подсказки по префиксу из памяти, без запроса в базу
     @Transactional(readOnly = true)
-    public List<ItemDto> getItemsByText(String text) {
-        if (text == null || text.isEmpty()) {
+    public List<ItemDto> getItemsByText(String text, int limit, boolean typeahead) {
+        if (text == null || text.isBlank()) {
             return new ArrayList<>();
         }
-        return itemRepository.findByText(text).stream().map(itemMapping::toDto).collect(Collectors.toList());
+        if (typeahead) {
+            return itemTypeahead.suggest(text, limit).stream().map(itemMapping::toDto).collect(Collectors.toList());
+        }
+        return itemRepository.findByText(text.trim(), limit).stream().map(itemMapping::toDto).collect(Collectors.toList());
     }
 
     public CommentDto postComment(CommentCreateDto dto, Long userId, Long itemId) {
-        Item item = itemRepository.findById(itemId).orElseThrow(() -> new IllegalStateException("Item not found"));
-        User user = userRepository.findById(userId).orElseThrow(() -> new IllegalStateException("User not found"));
-        Booking booking = bookingRepository.findFirstByBookerIdAndItemIdOrderByStartAsc(userId, itemId)
-                .orElseThrow(() -> new IllegalStateException(String.format("Пользователь с id: %s не брал в аренду вещи с id: %d", userId, itemId)));
-        if (booking.getEnd().isAfter(LocalDateTime.now())) {
-            throw new IllegalStateException("Срок аренды еще не истек");
+        if (commentWriteBehind.isEnabled()) {
+            Optional<CommentDto> queued = enqueueComment(dto, userId, itemId);
+            if (queued.isPresent()) {
+                return queued.get();
+            }
         }
+        Item item = itemRepository.findById(itemId).orElseThrow(() -> new IllegalStateException("Item not found"));
+        UserSummary author = userDirectory.find(userId).orElseThrow(() -> new IllegalStateException("User not found"));
+        checkFinishedBooking(userId, itemId);
         Comment comment = new Comment();
         comment.setText(dto.getText());
         comment.setItem(item);
-        comment.setAuthor(user);
-        return itemMapping.toDtoComment(commentRepository.save(comment));
+        comment.setAuthor(userRepository.getReferenceById(userId));
+        itemRepository.incrementVersion(itemId);
+        return itemMapping.toDtoComment(commentRepository.save(comment), author);
     }
 
-    public List<CommentDto> getCommentsByItemId(Long itemId) {
-        return commentRepository.findByItemIdOrderByCreatedDesc(itemId).stream().map(itemMapping::toDtoComment).collect(Collectors.toList());
+    // вещь отдельно не читаем: найденное завершённое бронирование уже означает, что она есть
+    private Optional<CommentDto> enqueueComment(CommentCreateDto dto, Long userId, Long itemId) {
+        UserSummary author = userDirectory.find(userId).orElseThrow(() -> new IllegalStateException("User not found"));
+        checkFinishedBooking(userId, itemId);
+        if (commentRepository.existsByItemIdAndAuthorId(itemId, userId)) {
+            throw new AlreadyExistsException("Пользователь уже оставил отзыв на эту вещь");
+        }
+        return commentWriteBehind.enqueue(itemId, userId, author.name(), dto.getText());
+    }
+
+    @Transactional(readOnly = true)
+    public List<CommentDto> getCommentsByItemId(Long itemId, Long userId) {
+        List<Comment> comments = commentRepository.findByItemIdOrderByCreatedDesc(itemId);
+        List<CommentDto> result = new ArrayList<>();
+        // автор видит свой отзыв, пока тот ещё в очереди на запись
+        if (userId != null && comments.stream().noneMatch(comment -> comment.getAuthor().getId().equals(userId))) {
+            result.addAll(commentWriteBehind.pendingFor(itemId, userId));
+        }
+        comments.stream().map(itemMapping::toDtoComment).forEach(result::add);
+        return result;
+    }
+
+    // всё, что лежит в архиве, уже закончилось, поэтому туда смотрим, только если в основной таблице не нашлось
+    // имя автора входит в отзывы, а вещи удаляемого владельца пропадают из подсказок
+    @EventListener
+    public void onUserEvent(UserEvent event) {
+        itemRepository.incrementVersionsByCommentAuthor(event.userId());
+        if (event.type() == UserEvent.Type.DELETING) {
+            itemRepository.findIdsByOwnerId(event.userId()).forEach(itemTypeahead::remove);
+        }
+    }
+
+    private void checkFinishedBooking(Long userId, Long itemId) {
+        Optional<Booking> booking = bookingRepository.findFirstByBookerIdAndItemIdOrderByStartAsc(userId, itemId);
+        if (booking.isPresent() && !booking.get().getEnd().isAfter(LocalDateTime.now())) {
+            return;
+        }
+        if (bookingArchive.isEnabled() && archivedBookingRepository.existsByBookerIdAndItemId(userId, itemId)) {
+            return;
+        }
+        if (booking.isEmpty()) {
+            throw new IllegalStateException(String.format("Пользователь с id: %s не брал в аренду вещи с id: %d", userId, itemId));
+        }
+        throw new IllegalStateException("Срок аренды еще не истек");
     }
 
     private void checkItem(Item item, Long ownerId) {
@@ -133,7 +274,11 @@ public class ItemService {
         return itemRepository.findById(id).orElseThrow(() -> new NotFoundException("Вещь не найдена"));
     }
 
+    // существование проверяется по справочнику, для внешнего ключа достаточно ссылки без запроса в базу
     private User findUserById(Long id) {
-        return userRepository.findById(id).orElseThrow(() -> new NotFoundException("Владелец не найден"));
+        if (!userDirectory.exists(id)) {
+            throw new NotFoundException("Владелец не найден");
+        }
+        return userRepository.getReferenceById(id);
     }
 }
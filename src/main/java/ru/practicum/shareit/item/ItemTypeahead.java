@@ -0,0 +1,213 @@
+package ru.practicum.shareit.item;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.datasource.PrimaryReads;
+import ru.practicum.shareit.item.dto.ItemSuggestion;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.util.TransactionHooks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Подсказки при наборе поискового запроса: отсортированный словарь слов из названий и описаний доступных вещей.
+ * Последнее слово запроса ищется как префикс, остальные - целиком. Словарь поднимается из базы при первом обращении
+ * и обновляется после коммита изменений вещей. Недавние ответы лежат в LRU, из которого при изменении вещи
+ * удаляются только запросы, под которые вещь подходила до изменения или подходит после.
+ */
+@Component
+public class ItemTypeahead {
+
+    private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::namePrefixMatch).reversed()
+            .thenComparing(entry -> entry.suggestion().id());
+
+    private final ItemRepository itemRepository;
+    private final PrimaryReads primaryReads;
+    private final Cache<Query, List<ItemSuggestion>> results;
+    private final NavigableMap<String, Set<Long>> terms = new ConcurrentSkipListMap<>();
+    private final Map<Long, Indexed> items = new ConcurrentHashMap<>();
+    private final Object loadLock = new Object();
+    private volatile boolean loaded;
+    // растёт при каждом изменении словаря, чтобы не положить в кэш ответ, посчитанный до изменения
+    private long changes;
+
+    public ItemTypeahead(ItemRepository itemRepository, PrimaryReads primaryReads,
+                         @Value("${shareit.items.typeahead.cache-size:1000}") long cacheSize) {
+        this.itemRepository = itemRepository;
+        this.primaryReads = primaryReads;
+        this.results = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    public List<ItemSuggestion> suggest(String text, int limit) {
+        Query query = Query.parse(text, limit);
+        if (query == null) {
+            return List.of();
+        }
+        List<ItemSuggestion> cached = results.getIfPresent(query);
+        if (cached != null) {
+            return cached;
+        }
+        ensureLoaded();
+        long observed = changes();
+        List<ItemSuggestion> found = find(query);
+        synchronized (this) {
+            if (observed == changes) {
+                results.put(query, found);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Обновляет вещь в словаре после коммита: недоступная вещь из подсказок убирается.
+     */
+    public void update(Item item) {
+        ItemSuggestion suggestion = Boolean.TRUE.equals(item.getAvailable())
+                ? new ItemSuggestion(item.getId(), item.getName(), item.getDescription(),
+                item.getRequest() != null ? item.getRequest().getId() : null)
+                : null;
+        Long id = item.getId();
+        TransactionHooks.afterCommit(() -> apply(id, suggestion));
+    }
+
+    public void remove(Long itemId) {
+        TransactionHooks.afterCommit(() -> apply(itemId, null));
+    }
+
+    private List<ItemSuggestion> find(Query query) {
+        Set<Long> candidates = new HashSet<>();
+        for (Set<Long> ids : terms.subMap(query.prefix(), true, query.prefix() + Character.MAX_VALUE, true).values()) {
+            candidates.addAll(ids);
+        }
+        List<Entry> matched = new ArrayList<>();
+        for (Long id : candidates) {
+            Indexed indexed = items.get(id);
+            if (indexed != null && indexed.terms().containsAll(query.words())) {
+                matched.add(new Entry(indexed.suggestion(), indexed.nameTerms().stream()
+                        .anyMatch(term -> term.startsWith(query.prefix()))));
+            }
+        }
+        matched.sort(ORDER);
+        return matched.stream().limit(query.limit()).map(Entry::suggestion).toList();
+    }
+
+    private synchronized void apply(Long id, ItemSuggestion suggestion) {
+        changes++;
+        if (!loaded) {
+            return;
+        }
+        Indexed previous = suggestion != null ? index(suggestion) : unindex(id);
+        if (suggestion != null && previous != null && !previous.suggestion().equals(suggestion)) {
+            unindexTerms(id, previous.terms(), items.get(id).terms());
+        }
+        Indexed current = items.get(id);
+        results.asMap().keySet().removeIf(query -> query.matches(previous) || query.matches(current));
+    }
+
+    private Indexed index(ItemSuggestion suggestion) {
+        Set<String> nameTerms = tokens(suggestion.name());
+        Set<String> allTerms = new HashSet<>(nameTerms);
+        allTerms.addAll(tokens(suggestion.description()));
+        for (String term : allTerms) {
+            terms.computeIfAbsent(term, key -> ConcurrentHashMap.newKeySet()).add(suggestion.id());
+        }
+        return items.put(suggestion.id(), new Indexed(suggestion, Set.copyOf(nameTerms), Set.copyOf(allTerms)));
+    }
+
+    private Indexed unindex(Long id) {
+        Indexed previous = items.remove(id);
+        if (previous != null) {
+            unindexTerms(id, previous.terms(), Set.of());
+        }
+        return previous;
+    }
+
+    private void unindexTerms(Long id, Collection<String> removed, Set<String> kept) {
+        for (String term : removed) {
+            if (kept.contains(term)) {
+                continue;
+            }
+            terms.computeIfPresent(term, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    // изменения, пришедшие во время чтения из базы, могли в него не попасть, тогда словарь читается заново;
+    // читается основная база: с отстающей реплики в словарь попали бы вещи без уже закоммиченных изменений
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (loadLock) {
+            while (!loaded) {
+                long observed = changes();
+                List<ItemSuggestion> all = primaryReads.read(itemRepository::findAllSuggestions);
+                synchronized (this) {
+                    if (observed == changes) {
+                        all.forEach(this::index);
+                        loaded = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private synchronized long changes() {
+        return changes;
+    }
+
+    static Set<String> tokens(String text) {
+        if (text == null) {
+            return Set.of();
+        }
+        Set<String> result = new HashSet<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                result.add(token);
+            }
+        }
+        return result;
+    }
+
+    private record Indexed(ItemSuggestion suggestion, Set<String> nameTerms, Set<String> terms) {
+    }
+
+    private record Entry(ItemSuggestion suggestion, boolean namePrefixMatch) {
+    }
+
+    private record Query(List<String> words, String prefix, int limit) {
+
+        static Query parse(String text, int limit) {
+            if (text == null) {
+                return null;
+            }
+            List<String> tokens = Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                    .filter(token -> !token.isEmpty())
+                    .toList();
+            if (tokens.isEmpty()) {
+                return null;
+            }
+            return new Query(List.copyOf(tokens.subList(0, tokens.size() - 1)), tokens.get(tokens.size() - 1), limit);
+        }
+
+        boolean matches(Indexed indexed) {
+            return indexed != null && indexed.terms().containsAll(words)
+                    && indexed.terms().stream().anyMatch(term -> term.startsWith(prefix));
+        }
+    }
+}
@@ -20,4 +20,5 @@ public class ItemDtoWithBookings {
     private BookingDtoSimple nextBooking;
     private BookingDtoSimple lastBooking;
     private List<CommentDto> comments = new ArrayList<>();
+    private Long commentCount;
 }
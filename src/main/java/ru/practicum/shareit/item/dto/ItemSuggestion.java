@@ -0,0 +1,7 @@
+package ru.practicum.shareit.item.dto;
+
+/**
+ * Доступная вещь в индексе подсказок ItemTypeahead.
+ */
+public record ItemSuggestion(Long id, String name, String description, Long requestId) {
+}
@@ -0,0 +1,4 @@
+package ru.practicum.shareit.item.dto;
+
+public record ItemVersion(Long id, Long ownerId, Long version) {
+}
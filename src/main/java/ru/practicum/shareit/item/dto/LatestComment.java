@@ -0,0 +1,19 @@
+package ru.practicum.shareit.item.dto;
+
+import java.time.Instant;
+
+public interface LatestComment {
+
+    Long getItemId();
+
+    Long getId();
+
+    String getText();
+
+    String getAuthorName();
+
+    Instant getCreated();
+
+    // сколько всего отзывов у вещи, а не только среди выбранных
+    Long getTotal();
+}
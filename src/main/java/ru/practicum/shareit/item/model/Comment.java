@@ -31,4 +31,7 @@ public class Comment {
     @CreationTimestamp
     @Column(updatable = false)
     private Instant created;
+
+    @Version
+    private Long version;
 }
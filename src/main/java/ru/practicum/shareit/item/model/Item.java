@@ -7,8 +7,6 @@ import ru.practicum.shareit.booking.Booking;
 import ru.practicum.shareit.request.ItemRequest;
 import ru.practicum.shareit.user.User;
 
-import java.time.LocalDateTime;
-import java.util.Comparator;
 import java.util.Set;
 
 /**
@@ -28,11 +26,14 @@ public class Item {
     private String description;
     private Boolean available;
 
-    @ManyToOne
+    @Version
+    private Long version;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", nullable = false)
     private User owner;
 
-    @OneToOne(fetch = FetchType.LAZY)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "request_id")
     private ItemRequest request;
 
@@ -41,13 +42,4 @@ public class Item {
 
     @OneToMany(mappedBy = "item", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Set<Comment> comments;
-
-    public Booking getNextBooking() {
-        return bookings.stream().filter(booking -> booking.getStart().isAfter(LocalDateTime.now())).min(Comparator.comparing(Booking::getStart)).orElse(null);
-    }
-
-    public Booking getLastBooking() {
-        return bookings.stream().filter(booking -> booking.getEnd().isBefore(LocalDateTime.now())).max(Comparator.comparing(Booking::getStart)).orElse(null);
-    }
-
 }
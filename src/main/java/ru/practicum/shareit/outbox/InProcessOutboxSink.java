@@ -0,0 +1,31 @@
+package ru.practicum.shareit.outbox;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Публикует события outbox как события приложения, их можно слушать через @EventListener(OutboxMessage.class).
+ * Годится для локальной проверки, внешние получатели подключаются своими реализациями OutboxSink.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "shareit.outbox.in-process-sink.enabled", havingValue = "true", matchIfMissing = true)
+public class InProcessOutboxSink implements OutboxSink {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public String name() {
+        return "in-process";
+    }
+
+    @Override
+    public void publish(OutboxMessage message) {
+        log.debug("Событие {} {} {}", message.eventType(), message.aggregateKey(), message.payload());
+        eventPublisher.publishEvent(message);
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.shareit.outbox;
+
+import java.time.LocalDateTime;
+
+/**
+ * Доменное событие из таблицы outbox. payload - JSON того же вида, что отдаёт REST API.
+ */
+public record OutboxMessage(Long id, String aggregateType, Long aggregateId, String eventType, String payload,
+                            LocalDateTime created) {
+
+    public String aggregateKey() {
+        return aggregateType + ":" + aggregateId;
+    }
+}
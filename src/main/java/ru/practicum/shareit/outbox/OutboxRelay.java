@@ -0,0 +1,127 @@
+package ru.practicum.shareit.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Отправляет события из outbox всем OutboxSink пачками по batch-size в порядке id и удаляет отправленные.
+ * Пачку обрабатывает один экземпляр приложения (advisory lock), поэтому события одного агрегата не обгоняют
+ * друг друга. Если получатель не принял событие, остальные события того же агрегата в пачке откладываются
+ * до следующего опроса, события других агрегатов уходят как обычно.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    // отличается от ключа BookingArchive, чтобы архивация и отправка событий не ждали друг друга
+    private static final long LOCK_KEY = 0x4f5554424f58L;
+    private static final String SELECT = "SELECT id, aggregate_type, aggregate_id, event_type, payload, created "
+            + "FROM outbox ORDER BY id LIMIT ?";
+    private static final String DELETE = "DELETE FROM outbox WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final List<OutboxSink> sinks;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Counter published;
+    private final Timer lag;
+    private final Timer batch;
+    private final Map<String, Counter> failures = new HashMap<>();
+
+    public OutboxRelay(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, List<OutboxSink> sinks,
+                       @Value("${shareit.outbox.enabled:false}") boolean enabled,
+                       @Value("${shareit.outbox.batch-size:100}") int batchSize,
+                       MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.sinks = sinks;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.published = Counter.builder("shareit.outbox.published")
+                .description("События outbox, принятые всеми получателями")
+                .register(meterRegistry);
+        this.lag = Timer.builder("shareit.outbox.lag")
+                .description("Время от записи события до его отправки")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.batch = Timer.builder("shareit.outbox.batch")
+                .description("Обработка одной пачки событий")
+                .register(meterRegistry);
+        for (OutboxSink sink : sinks) {
+            failures.put(sink.name(), Counter.builder("shareit.outbox.failures")
+                    .description("Неудачные попытки отправить событие")
+                    .tag("sink", sink.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.outbox.interval:PT0.5S}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        Integer read;
+        do {
+            read = batch.record(() -> transactionTemplate.execute(status -> relayBatch()));
+        } while (read != null && read == batchSize);
+    }
+
+    // возвращает число прочитанных событий; пачка, в которой что-то не ушло, следующую пачку не запускает
+    private int relayBatch() {
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class,
+                LOCK_KEY))) {
+            return 0;
+        }
+        List<OutboxMessage> messages = jdbcTemplate.query(SELECT, (rs, rowNum) -> new OutboxMessage(rs.getLong("id"),
+                rs.getString("aggregate_type"), rs.getLong("aggregate_id"), rs.getString("event_type"),
+                rs.getString("payload"), rs.getTimestamp("created").toLocalDateTime()), batchSize);
+        Set<String> blocked = new HashSet<>();
+        List<Object[]> done = new ArrayList<>();
+        for (OutboxMessage message : messages) {
+            if (blocked.contains(message.aggregateKey())) {
+                continue;
+            }
+            if (publish(message)) {
+                done.add(new Object[]{message.id()});
+                lag.record(Duration.between(message.created(), LocalDateTime.now()));
+            } else {
+                blocked.add(message.aggregateKey());
+            }
+        }
+        jdbcTemplate.batchUpdate(DELETE, done);
+        published.increment(done.size());
+        return blocked.isEmpty() ? messages.size() : 0;
+    }
+
+    // при повторной отправке событие получат и те, кто его уже принял
+    private boolean publish(OutboxMessage message) {
+        for (OutboxSink sink : sinks) {
+            try {
+                sink.publish(message);
+            } catch (Exception e) {
+                failures.get(sink.name()).increment();
+                log.warn("Получатель {} не принял событие {} {}: {}", sink.name(), message.id(), message.aggregateKey(),
+                        e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,40 @@
+package ru.practicum.shareit.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Запись доменных событий в outbox. Вызывается только внутри транзакции изменения: событие сохраняется
+ * тогда и только тогда, когда коммитится само изменение.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    public static final String BOOKING = "booking";
+    public static final String ITEM = "item";
+
+    private static final String INSERT = "INSERT INTO outbox (aggregate_type, aggregate_id, event_type, payload, created) "
+            + "VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String aggregateType, Long aggregateId, String eventType, Object payload) {
+        try {
+            jdbcTemplate.update(INSERT, aggregateType, aggregateId, eventType, objectMapper.writeValueAsString(payload),
+                    Timestamp.valueOf(LocalDateTime.now()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать событие " + eventType, e);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.practicum.shareit.outbox;
+
+/**
+ * Получатель событий outbox. Доставка не реже одного раза: событие может прийти повторно, если отправка
+ * упала или приложение остановилось до удаления события из таблицы, поэтому получатель должен различать
+ * повторы по id. События одного агрегата приходят в порядке их записи.
+ */
+public interface OutboxSink {
+
+    String name();
+
+    void publish(OutboxMessage message) throws Exception;
+}
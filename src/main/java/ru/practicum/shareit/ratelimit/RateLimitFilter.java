@@ -0,0 +1,144 @@
+package ru.practicum.shareit.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.practicum.shareit.ErrorResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение частоты запросов на пользователя (X-Sharer-User-Id, без заголовка - на адрес клиента), чтобы один
+ * клиент не занял весь пул соединений с базой. У чтения и записи отдельные бюджеты. Лишние запросы отклоняются
+ * с 429 и Retry-After до того, как дойдут до контроллеров.
+ * <p>
+ * Идентификатор в заголовке клиент выбирает сам, поэтому по shareit.ratelimit.address.enabled сверх бюджета
+ * пользователя каждый запрос проходит через более широкий общий бюджет адреса: перебор идентификаторов с одного адреса
+ * упирается в него и не заводит новых ключей. По умолчанию он выключен: за прокси без server.forward-headers-strategy
+ * у всех клиентов один адрес, и бюджет адреса ограничил бы весь сервис. Число ключей в каждом ограничителе не больше
+ * shareit.ratelimit.max-keys.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String USER_HEADER = "X-Sharer-User-Id";
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final boolean enabled;
+    private final boolean addressEnabled;
+    private final RateLimiter reads;
+    private final RateLimiter writes;
+    private final RateLimiter addresses;
+    private final Counter shedReads;
+    private final Counter shedWrites;
+    private final Counter shedAddresses;
+    private final byte[] body;
+
+    public RateLimitFilter(@Value("${shareit.ratelimit.enabled:false}") boolean enabled,
+                           @Value("${shareit.ratelimit.read.per-second:50}") double readsPerSecond,
+                           @Value("${shareit.ratelimit.read.burst:100}") int readBurst,
+                           @Value("${shareit.ratelimit.write.per-second:10}") double writesPerSecond,
+                           @Value("${shareit.ratelimit.write.burst:20}") int writeBurst,
+                           @Value("${shareit.ratelimit.address.enabled:false}") boolean addressEnabled,
+                           @Value("${shareit.ratelimit.address.per-second:200}") double addressPerSecond,
+                           @Value("${shareit.ratelimit.address.burst:400}") int addressBurst,
+                           @Value("${shareit.ratelimit.max-keys:100000}") int maxKeys,
+                           ObjectMapper objectMapper, MeterRegistry meterRegistry) throws IOException {
+        this.enabled = enabled;
+        this.addressEnabled = addressEnabled;
+        this.reads = new RateLimiter(readsPerSecond, readBurst, maxKeys);
+        this.writes = new RateLimiter(writesPerSecond, writeBurst, maxKeys);
+        this.addresses = new RateLimiter(addressPerSecond, addressBurst, maxKeys);
+        this.shedReads = shed(meterRegistry, "read");
+        this.shedWrites = shed(meterRegistry, "write");
+        this.shedAddresses = shed(meterRegistry, "address");
+        this.body = objectMapper.writeValueAsBytes(new ErrorResponse("Слишком много запросов, повторите позже"));
+        meterRegistry.gauge("shareit.ratelimit.keys", this, filter -> filter.reads.size() + filter.writes.size()
+                + filter.addresses.size());
+    }
+
+    private static Counter shed(MeterRegistry meterRegistry, String kind) {
+        return Counter.builder("shareit.ratelimit.shed")
+                .description("Запросы, отклонённые ограничением частоты")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || request.getRequestURI().startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long now = System.nanoTime();
+        // адрес проверяется первым: отклонённый по адресу запрос не заводит ведро для нового идентификатора
+        if (addressEnabled) {
+            long wait = addresses.acquire(request.getRemoteAddr(), now);
+            if (wait > 0) {
+                shedAddresses.increment();
+                reject(response, wait);
+                return;
+            }
+        }
+        boolean read = READ_METHODS.contains(request.getMethod());
+        long wait = (read ? reads : writes).acquire(key(request), now);
+        if (wait > 0) {
+            (read ? shedReads : shedWrites).increment();
+            reject(response, wait);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private void reject(HttpServletResponse response, long wait) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(
+                wait + TimeUnit.SECONDS.toNanos(1) - 1))));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getOutputStream().write(body);
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.ratelimit.evict-interval:PT1M}")
+    public void evictIdle() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        reads.evictIdle(now);
+        writes.evictIdle(now);
+        addresses.evictIdle(now);
+    }
+
+    // произвольная строка в заголовке не должна заводить новый ключ, такие запросы считаются по адресу
+    private static String key(HttpServletRequest request) {
+        String user = request.getHeader(USER_HEADER);
+        if (user != null) {
+            try {
+                return "user:" + Long.parseLong(user.trim());
+            } catch (NumberFormatException ignored) {
+                // считаем по адресу
+            }
+        }
+        return "addr:" + request.getRemoteAddr();
+    }
+}
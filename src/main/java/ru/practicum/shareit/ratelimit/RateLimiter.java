@@ -0,0 +1,77 @@
+package ru.practicum.shareit.ratelimit;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket в форме GCRA: на ключ хранится одно число - момент, когда ведро снова станет полным.
+ * Запрос пропускается, если после его учёта этот момент отстоит от текущего не больше чем на burst интервалов.
+ * Проверка - один compareAndSet без блокировок, ConcurrentHashMap разводит ключи по независимым корзинам.
+ * Число ключей ограничено maxKeys: когда места нет даже после удаления полных вёдер, новый ключ получает отказ,
+ * а уже известные продолжают работать.
+ */
+class RateLimiter {
+
+    private static final long EVICT_PAUSE = Duration.ofMillis(100).toNanos();
+
+    private final long interval;
+    private final long tolerance;
+    private final int maxKeys;
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    // внеочередная чистка при переполнении проходит по всей карте, поэтому запускается не чаще раза в EVICT_PAUSE
+    private final AtomicLong lastOverflowEviction = new AtomicLong(Long.MIN_VALUE);
+
+    RateLimiter(double permitsPerSecond, int burst, int maxKeys) {
+        this.interval = (long) (Duration.ofSeconds(1).toNanos() / permitsPerSecond);
+        this.tolerance = interval * burst;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Возвращает 0, если запрос пропущен, иначе через сколько наносекунд его можно повторить.
+     */
+    long acquire(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            // проверка размера не атомарна со вставкой, при гонке ключей может стать на несколько больше maxKeys
+            if (buckets.size() >= maxKeys && !evictOnOverflow(now)) {
+                return interval;
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long full = bucket.get();
+            long next = Math.max(full, now) + interval;
+            long wait = next - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(full, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // ведро, которое уже снова полное, ничем не отличается от отсутствующего, поэтому его можно удалить;
+    // запрос, успевший взять удаляемое ведро, посчитается в нём, худший случай - один лишний запрос сверх burst
+    int evictIdle(long now) {
+        int before = buckets.size();
+        buckets.entrySet().removeIf(entry -> entry.getValue().get() <= now);
+        return before - buckets.size();
+    }
+
+    private boolean evictOnOverflow(long now) {
+        long last = lastOverflowEviction.get();
+        if ((last != Long.MIN_VALUE && now - last < EVICT_PAUSE) || !lastOverflowEviction.compareAndSet(last, now)) {
+            return false;
+        }
+        evictIdle(now);
+        return buckets.size() < maxKeys;
+    }
+
+    int size() {
+        return buckets.size();
+    }
+}
@@ -1,12 +1,48 @@
 package ru.practicum.shareit.request;
 
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.request.dto.ItemRequestCreateDto;
+import ru.practicum.shareit.request.dto.ItemRequestDto;
+
+import java.util.List;
 
-/**
- * TODO Sprint add-item-requests.
- */
 @RestController
 @RequestMapping(path = "/requests")
+@RequiredArgsConstructor
+@Validated
 public class ItemRequestController {
+
+    private final ItemRequestService itemRequestService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public ItemRequestDto createRequest(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                        @Valid @RequestBody ItemRequestCreateDto request) {
+        return itemRequestService.createRequest(request, userId);
+    }
+
+    @GetMapping
+    public List<ItemRequestDto> getOwnRequests(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                               @RequestParam(required = false) Long after,
+                                               @RequestParam(defaultValue = "100") @Positive @Max(500) int limit) {
+        return itemRequestService.getOwnRequests(userId, after, limit);
+    }
+
+    @GetMapping(path = "/all")
+    public List<ItemRequestDto> getOtherRequests(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                                 @RequestParam(required = false) Long after,
+                                                 @RequestParam(defaultValue = "100") @Positive @Max(500) int limit) {
+        return itemRequestService.getOtherRequests(userId, after, limit);
+    }
+
+    @GetMapping(path = "/{requestId}")
+    public ItemRequestDto getRequest(@PathVariable Long requestId) {
+        return itemRequestService.getRequest(requestId);
+    }
 }
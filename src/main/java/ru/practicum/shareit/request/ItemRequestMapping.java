@@ -1,6 +1,7 @@
 package ru.practicum.shareit.request;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import ru.practicum.shareit.request.dto.ItemRequestCreateDto;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
 
@@ -9,5 +10,6 @@ public interface ItemRequestMapping {
 
     public ItemRequest fromDto(ItemRequestCreateDto itemRequestCreateDto);
 
+    @Mapping(target = "items", ignore = true)
     public ItemRequestDto toDto(ItemRequest itemRequest);
 }
@@ -1,6 +1,23 @@
 package ru.practicum.shareit.request;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
 
 public interface ItemRequestRepository extends JpaRepository<ItemRequest, Long> {
+
+    Window<ItemRequest> findByRequesterIdOrderByCreatedDescIdDesc(Long requesterId, ScrollPosition position,
+                                                                  Limit limit);
+
+    Window<ItemRequest> findByRequesterIdNotOrderByCreatedDescIdDesc(Long requesterId, ScrollPosition position,
+                                                                     Limit limit);
+
+    @Query("SELECT r.created FROM ItemRequest r WHERE r.id = :id")
+    Optional<Instant> findCreatedById(@Param("id") Long id);
 }
@@ -0,0 +1,98 @@
+package ru.practicum.shareit.request;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.request.dto.ItemAnswerDto;
+import ru.practicum.shareit.request.dto.ItemRequestCreateDto;
+import ru.practicum.shareit.request.dto.ItemRequestDto;
+import ru.practicum.shareit.user.UserDirectory;
+import ru.practicum.shareit.user.UserRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@Timed("shareit.service")
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class ItemRequestService {
+
+    private final ItemRequestRepository itemRequestRepository;
+    private final ItemRequestMapping itemRequestMapping;
+    private final ItemRepository itemRepository;
+    private final UserRepository userRepository;
+    private final UserDirectory userDirectory;
+
+    @Transactional
+    public ItemRequestDto createRequest(ItemRequestCreateDto createDto, Long userId) {
+        checkUser(userId);
+        ItemRequest request = itemRequestMapping.fromDto(createDto);
+        request.setRequester(userRepository.getReferenceById(userId));
+        ItemRequestDto dto = itemRequestMapping.toDto(itemRequestRepository.save(request));
+        dto.setItems(List.of());
+        return dto;
+    }
+
+    public List<ItemRequestDto> getOwnRequests(Long userId, Long after, int limit) {
+        checkUser(userId);
+        return withAnswers(itemRequestRepository.findByRequesterIdOrderByCreatedDescIdDesc(userId,
+                position(after), Limit.of(limit)).getContent());
+    }
+
+    public List<ItemRequestDto> getOtherRequests(Long userId, Long after, int limit) {
+        checkUser(userId);
+        return withAnswers(itemRequestRepository.findByRequesterIdNotOrderByCreatedDescIdDesc(userId,
+                position(after), Limit.of(limit)).getContent());
+    }
+
+    public ItemRequestDto getRequest(Long id) {
+        ItemRequest request = itemRequestRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException(String.format("Запрос с id '%s' не найден", id)));
+        return withAnswers(List.of(request)).get(0);
+    }
+
+    // ответы на всю страницу запросов читаются одним запросом, а не по запросу на каждый
+    private List<ItemRequestDto> withAnswers(List<ItemRequest> requests) {
+        if (requests.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ItemRequestDto> result = new LinkedHashMap<>();
+        for (ItemRequest request : requests) {
+            ItemRequestDto dto = itemRequestMapping.toDto(request);
+            dto.setItems(new ArrayList<>());
+            result.put(request.getId(), dto);
+        }
+        for (ItemAnswerDto answer : itemRepository.findAnswersByRequestIds(result.keySet())) {
+            result.get(answer.requestId()).getItems().add(answer);
+        }
+        return List.copyOf(result.values());
+    }
+
+    // курсор - id последнего запроса предыдущей страницы, время создания достаём по первичному ключу
+    private ScrollPosition position(Long after) {
+        if (after == null) {
+            return ScrollPosition.keyset();
+        }
+        Instant created = itemRequestRepository.findCreatedById(after)
+                .orElseThrow(() -> new NotFoundException(String.format("Запрос с id '%s' не найден", after)));
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("created", created);
+        keys.put("id", after);
+        return ScrollPosition.forward(keys);
+    }
+
+    private void checkUser(Long userId) {
+        if (!userDirectory.exists(userId)) {
+            throw new NotFoundException("Пользователь не найден");
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.shareit.request.dto;
+
+/**
+ * Вещь, добавленная в ответ на запрос.
+ */
+public record ItemAnswerDto(Long requestId, Long id, String name, Long ownerId) {
+}
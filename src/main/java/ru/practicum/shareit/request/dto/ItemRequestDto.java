@@ -3,10 +3,13 @@ package ru.practicum.shareit.request.dto;
 import lombok.Data;
 
 import java.time.Instant;
+import java.util.List;
 
 @Data
 public class ItemRequestDto {
 
+    private Long id;
     private String description;
-    private Instant createdAt;
+    private Instant created;
+    private List<ItemAnswerDto> items;
 }
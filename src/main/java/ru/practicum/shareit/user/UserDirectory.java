@@ -0,0 +1,94 @@
+package ru.practicum.shareit.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.datasource.PrimaryReads;
+import ru.practicum.shareit.user.dto.UserSummary;
+import ru.practicum.shareit.util.TransactionHooks;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Справочник пользователей для проверок существования и поиска по email.
+ * Кэшируются только найденные пользователи: отсутствие пользователя всегда проверяется по базе,
+ * иначе только что созданный пользователь какое-то время считался бы несуществующим.
+ */
+@Component
+public class UserDirectory {
+
+    private final UserRepository userRepository;
+    private final UserMapping userMapping;
+    private final PrimaryReads primaryReads;
+    private final Cache<Long, UserSummary> byId;
+    private final Cache<String, Long> byEmail;
+    // растёт при каждой инвалидации, чтобы не положить в кэш значение, прочитанное до чужого коммита
+    private final AtomicLong generation = new AtomicLong();
+
+    public UserDirectory(UserRepository userRepository, UserMapping userMapping, PrimaryReads primaryReads,
+                         @Value("${shareit.users.directory-size:10000}") long cacheSize) {
+        this.userRepository = userRepository;
+        this.userMapping = userMapping;
+        this.primaryReads = primaryReads;
+        this.byId = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        this.byEmail = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    public Optional<UserSummary> find(Long id) {
+        UserSummary cached = byId.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long observed = generation.get();
+        Optional<UserSummary> loaded = primaryReads.read(() -> userRepository.findById(id).map(userMapping::toSummary));
+        loaded.ifPresent(summary -> put(summary, observed));
+        return loaded;
+    }
+
+    public boolean exists(Long id) {
+        return find(id).isPresent();
+    }
+
+    public Optional<Long> findIdByEmail(String email) {
+        Long cachedId = byEmail.getIfPresent(email);
+        if (cachedId != null) {
+            // запись по email могла пережить вытесненную или удалённую запись по id, поэтому сверяемся с ней
+            Optional<UserSummary> summary = find(cachedId);
+            if (summary.isPresent() && summary.get().email().equals(email)) {
+                return Optional.of(cachedId);
+            }
+            byEmail.invalidate(email);
+        }
+        long observed = generation.get();
+        Optional<UserSummary> loaded = primaryReads.read(
+                () -> userRepository.findByEmail(email).map(userMapping::toSummary));
+        loaded.ifPresent(summary -> put(summary, observed));
+        return loaded.map(UserSummary::id);
+    }
+
+    /**
+     * Сбрасывает пользователя сразу и ещё раз после коммита, чтобы параллельное чтение не вернуло в кэш старые данные.
+     */
+    public void invalidate(Long id) {
+        evict(id);
+        TransactionHooks.afterCommit(() -> evict(id));
+    }
+
+    private void put(UserSummary summary, long observed) {
+        if (observed == generation.get()) {
+            byId.put(summary.id(), summary);
+            byEmail.put(summary.email(), summary.id());
+        }
+    }
+
+    private void evict(Long id) {
+        generation.incrementAndGet();
+        UserSummary summary = byId.getIfPresent(id);
+        byId.invalidate(id);
+        if (summary != null) {
+            byEmail.invalidate(summary.email());
+        }
+    }
+}
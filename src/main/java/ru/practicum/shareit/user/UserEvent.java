@@ -0,0 +1,13 @@
+package ru.practicum.shareit.user;
+
+/**
+ * Изменение пользователя, от которого зависят кэши вещей и бронирований.
+ * Публикуется в транзакции до записи в базу, поэтому слушатели ещё видят вещи и бронирования пользователя.
+ */
+public record UserEvent(Type type, Long userId) {
+
+    public enum Type {
+        RENAMED,
+        DELETING
+    }
+}
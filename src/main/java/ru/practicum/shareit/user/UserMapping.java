@@ -4,6 +4,7 @@ import org.mapstruct.Mapper;
 import ru.practicum.shareit.user.dto.UserCreateDto;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.dto.UserIdDto;
+import ru.practicum.shareit.user.dto.UserSummary;
 import ru.practicum.shareit.user.dto.UserUpdateDto;
 
 @Mapper(componentModel = "spring")
@@ -16,4 +17,8 @@ public interface UserMapping {
     public UserDto toDto(User user);
 
     UserIdDto toUserIdDto(User user);
+
+    UserSummary toSummary(User user);
+
+    UserDto toDto(UserSummary summary);
 }
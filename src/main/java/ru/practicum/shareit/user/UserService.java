@@ -1,6 +1,8 @@
 package ru.practicum.shareit.user;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.exception.AlreadyExistsException;
@@ -9,19 +11,21 @@ import ru.practicum.shareit.user.dto.UserCreateDto;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.dto.UserUpdateDto;
 
-import java.util.Optional;
-
 @Service
+@Timed("shareit.service")
 @Transactional
 @RequiredArgsConstructor
 public class UserService {
 
     private final UserRepository userRepository;
     private final UserMapping userMapping;
+    private final UserDirectory userDirectory;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional(readOnly = true)
     public UserDto getUser(Long id) {
-        return userMapping.toDto(findUserById(id));
+        return userMapping.toDto(userDirectory.find(id)
+                .orElseThrow(() -> new NotFoundException("Пользователь не найден")));
     }
 
     public UserDto createUser(UserCreateDto userDto) {
@@ -38,12 +42,17 @@ public class UserService {
         }
         if (userDto.getName() != null && !userDto.getName().equals(user.getName())) {
             user.setName(userDto.getName());
+            eventPublisher.publishEvent(new UserEvent(UserEvent.Type.RENAMED, id));
         }
+        userDirectory.invalidate(id);
         return userMapping.toDto(userRepository.save(user));
     }
 
     public void deleteUser(Long id) {
+        // вещи и бронирования пользователя удаляются каскадом в базе, кэши по ним сбрасывают слушатели события
+        eventPublisher.publishEvent(new UserEvent(UserEvent.Type.DELETING, id));
         userRepository.deleteById(id);
+        userDirectory.invalidate(id);
     }
 
     private User findUserById(Long id) {
@@ -51,8 +60,7 @@ public class UserService {
     }
 
     private void checkEmail(String email) {
-        Optional<User> maybeUser = userRepository.findByEmail(email);
-        if (maybeUser.isPresent()) {
+        if (userDirectory.findIdByEmail(email).isPresent()) {
             String errorMessage = String.format("Пользователь с email '%s' уже существует", email);
             throw new AlreadyExistsException(errorMessage);
         }
@@ -0,0 +1,4 @@
+package ru.practicum.shareit.user.dto;
+
+public record UserSummary(Long id, String name, String email) {
+}
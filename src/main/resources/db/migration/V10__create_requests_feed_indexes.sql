@@ -0,0 +1,5 @@
+-- ответы на запросы выбираются одним запросом по списку request_id
+CREATE INDEX idx_items_request_id ON items (request_id) WHERE request_id IS NOT NULL;
+
+-- лента чужих запросов листается по (created, id) от новых к старым
+CREATE INDEX idx_requests_created_id ON requests (created DESC, id DESC);
@@ -0,0 +1,4 @@
+-- счётчики изменений для оптимистичных блокировок и ETag
+ALTER TABLE items ADD COLUMN version bigint NOT NULL DEFAULT 0;
+ALTER TABLE bookings ADD COLUMN version bigint NOT NULL DEFAULT 0;
+ALTER TABLE comments ADD COLUMN version bigint NOT NULL DEFAULT 0;
@@ -0,0 +1,21 @@
+-- составные индексы повторяют фильтр и сортировку запросов BookingRepository и ItemRepository,
+-- одиночные индексы по внешним ключам становятся их префиксами и больше не нужны
+
+-- бронирования пользователя: ORDER BY start, id и ORDER BY end_time, id, отдельно по статусу
+CREATE INDEX idx_bookings_user_start ON bookings (user_id, start, id);
+CREATE INDEX idx_bookings_user_end ON bookings (user_id, end_time, id);
+CREATE INDEX idx_bookings_user_status_start ON bookings (user_id, status, start, id);
+DROP INDEX idx_booking_user_id;
+
+-- бронирования вещи: ближайшее (start) и последнее (end_time DESC) для каждой вещи, интервалы для проверки дат
+CREATE INDEX idx_bookings_item_start ON bookings (item_id, start, id);
+CREATE INDEX idx_bookings_item_end ON bookings (item_id, end_time DESC, id DESC);
+DROP INDEX idx_booking_item_id;
+
+-- вещи владельца по порядку id
+CREATE INDEX idx_items_owner_id_id ON items (owner_id, id);
+DROP INDEX idx_items_owner_id;
+
+-- отзывы к вещи от новых к старым
+CREATE INDEX idx_comments_item_created ON comments (item_id, created DESC);
+DROP INDEX idx_comm_items;
@@ -0,0 +1,38 @@
+-- владелец вещи хранится прямо в бронировании, чтобы списки владельца читались без соединения с items
+ALTER TABLE bookings ADD COLUMN owner_id bigint;
+
+UPDATE bookings b SET owner_id = i.owner_id FROM items i WHERE i.id = b.item_id;
+
+ALTER TABLE bookings ALTER COLUMN owner_id SET NOT NULL;
+ALTER TABLE bookings ADD CONSTRAINT fk_booking_owner_id FOREIGN KEY (owner_id) REFERENCES users (id) ON DELETE CASCADE;
+
+CREATE INDEX idx_bookings_owner_start ON bookings (owner_id, start, id);
+CREATE INDEX idx_bookings_owner_end ON bookings (owner_id, end_time, id);
+CREATE INDEX idx_bookings_owner_status_start ON bookings (owner_id, status, start, id);
+
+-- приложение заполняет owner_id само, триггер держит его верным при вставке в обход приложения и смене вещи
+CREATE FUNCTION bookings_set_owner_id() RETURNS trigger AS
+$$
+BEGIN
+    NEW.owner_id := (SELECT owner_id FROM items WHERE id = NEW.item_id);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER bookings_set_owner_id
+    BEFORE INSERT OR UPDATE OF item_id ON bookings
+    FOR EACH ROW EXECUTE FUNCTION bookings_set_owner_id();
+
+-- вещь перешла к другому владельцу: её бронирования переходят вместе с ней
+CREATE FUNCTION items_move_bookings_owner_id() RETURNS trigger AS
+$$
+BEGIN
+    UPDATE bookings SET owner_id = NEW.owner_id WHERE item_id = NEW.id;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER items_move_bookings_owner_id
+    AFTER UPDATE OF owner_id ON items
+    FOR EACH ROW WHEN (OLD.owner_id IS DISTINCT FROM NEW.owner_id)
+    EXECUTE FUNCTION items_move_bookings_owner_id();
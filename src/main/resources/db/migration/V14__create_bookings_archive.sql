@@ -0,0 +1,33 @@
+-- завершённые давно бронирования переносятся сюда фоновой задачей BookingArchive.
+-- Секции по годам end_time создаются ею же перед переносом, поэтому запросы с условием на end_time
+-- читают только нужные годы. Основная таблица не секционируется: ограничение bookings_no_overlap
+-- сравнивает диапазоны дат, а исключающие ограничения на секционированной таблице должны сравнивать
+-- ключ секционирования на равенство
+CREATE TABLE bookings_archive
+(
+    id bigint NOT NULL,
+    start timestamp NOT NULL,
+    end_time timestamp NOT NULL,
+    user_id bigint NOT NULL,
+    item_id bigint NOT NULL,
+    status smallint,
+    version bigint NOT NULL DEFAULT 0,
+    owner_id bigint NOT NULL,
+    PRIMARY KEY (id, end_time),
+    CONSTRAINT fk_archive_user_id FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE,
+    CONSTRAINT fk_archive_item_id FOREIGN KEY (item_id) REFERENCES items (id) ON DELETE RESTRICT,
+    CONSTRAINT fk_archive_owner_id FOREIGN KEY (owner_id) REFERENCES users (id) ON DELETE CASCADE
+) PARTITION BY RANGE (end_time);
+
+-- те же списки, что и по основной таблице: по start, по end_time и по статусу
+CREATE INDEX idx_archive_user_start ON bookings_archive (user_id, start, id);
+CREATE INDEX idx_archive_user_end ON bookings_archive (user_id, end_time, id);
+CREATE INDEX idx_archive_user_status_start ON bookings_archive (user_id, status, start, id);
+CREATE INDEX idx_archive_owner_start ON bookings_archive (owner_id, start, id);
+CREATE INDEX idx_archive_owner_end ON bookings_archive (owner_id, end_time, id);
+CREATE INDEX idx_archive_owner_status_start ON bookings_archive (owner_id, status, start, id);
+-- последнее бронирование вещи, если в основной таблице его уже нет
+CREATE INDEX idx_archive_item_end ON bookings_archive (item_id, end_time DESC, id DESC);
+
+-- задача архивации выбирает самые старые бронирования основной таблицы
+CREATE INDEX idx_bookings_end_time ON bookings (end_time);
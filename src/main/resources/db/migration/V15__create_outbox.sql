@@ -0,0 +1,10 @@
+-- события пишутся в одной транзакции с изменением, OutboxRelay отправляет их по порядку id и удаляет
+CREATE TABLE outbox
+(
+    id bigint NOT NULL GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    aggregate_type varchar(32) NOT NULL,
+    aggregate_id bigint NOT NULL,
+    event_type varchar(32) NOT NULL,
+    payload text NOT NULL,
+    created timestamp NOT NULL DEFAULT now()
+);
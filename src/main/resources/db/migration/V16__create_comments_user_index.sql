@@ -0,0 +1,2 @@
+-- отзывы автора: смена имени или удаление пользователя поднимают версии вещей, к которым он оставлял отзывы
+CREATE INDEX idx_comments_user ON comments (user_id);
@@ -0,0 +1,6 @@
+-- у архива нет связи в модели JPA, поэтому каскад удаления вещи до него не доходит: удаление вещи
+-- или её владельца с архивными бронированиями упиралось в RESTRICT. Архив удаляется вместе с вещью,
+-- как и по ссылкам на пользователей
+ALTER TABLE bookings_archive DROP CONSTRAINT fk_archive_item_id;
+ALTER TABLE bookings_archive ADD CONSTRAINT fk_archive_item_id
+    FOREIGN KEY (item_id) REFERENCES items (id) ON DELETE CASCADE;
@@ -0,0 +1,3 @@
+-- свои запросы листаются по (created, id) от новых к старым, одиночный индекс по user_id становится префиксом
+CREATE INDEX idx_requests_user_created_id ON requests (user_id, created DESC, id DESC);
+DROP INDEX idx_requests_user_id;
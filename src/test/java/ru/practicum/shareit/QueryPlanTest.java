@@ -0,0 +1,396 @@
+package ru.practicum.shareit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.ArchivedBookingRepository;
+import ru.practicum.shareit.booking.BookingArchive;
+import ru.practicum.shareit.booking.BookingRepository;
+import ru.practicum.shareit.booking.Status;
+import ru.practicum.shareit.item.CommentRepository;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.request.ItemRequestRepository;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Планы запросов BookingRepository, ArchivedBookingRepository и ItemRepository на PostgreSQL с заполненной базой. Каждый запрос выполняется
+ * через репозиторий, перехваченный SQL с теми же значениями параметров разбирается EXPLAIN. Тест падает на
+ * последовательном чтении большой таблицы и на сортировке большого числа строк.
+ * База из SHAREIT_PLAN_TEST_URL очищается перед запуском:
+ * <pre>
+ * SHAREIT_PLAN_TEST_URL=jdbc:postgresql://localhost:5432/shareit_plans mvn test -Dtest=QueryPlanTest
+ * </pre>
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=${SHAREIT_PLAN_TEST_URL}",
+        "spring.datasource.username=${SHAREIT_PLAN_TEST_USERNAME:postgres}",
+        "spring.datasource.password=${SHAREIT_PLAN_TEST_PASSWORD:}",
+        "spring.datasource.driverClassName=org.postgresql.Driver",
+        "spring.flyway.enabled=true",
+        "spring.flyway.clean-disabled=false",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "shareit.bookings.archive.enabled=true",
+        "shareit.bookings.archive.batch-size=10000",
+        "shareit.bookings.archive.initial-delay=PT1H"})
+@ActiveProfiles("test")
+@EnabledIfEnvironmentVariable(named = "SHAREIT_PLAN_TEST_URL", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTest {
+
+    private static final int USERS = 10_000;
+    private static final int ITEMS = 20_000;
+    private static final int BOOKINGS_PER_ITEM = 10;
+    private static final int ARCHIVED_PER_ITEM = 5;
+    private static final long HEAVY_OWNER = 2;
+    private static final Set<String> LARGE_TABLES = Set.of("users", "items", "bookings", "bookings_archive",
+            "comments", "requests");
+    // сортировка такого числа строк уже означает, что индекс не подходит под ORDER BY
+    private static final long MAX_SORTED_ROWS = 1_000;
+
+    private static final List<String> statements = new ArrayList<>();
+
+    @Autowired
+    private Flyway flyway;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private ArchivedBookingRepository archivedBookingRepository;
+    @Autowired
+    private BookingArchive bookingArchive;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+    @Autowired
+    private ItemRequestRepository itemRequestRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeAll
+    void seed() {
+        flyway.clean();
+        flyway.migrate();
+        jdbcTemplate.update("INSERT INTO users (name, email) "
+                + "SELECT 'user ' || g, 'user' || g || '@mail.ru' FROM generate_series(1, ?) g", USERS);
+        jdbcTemplate.update("INSERT INTO requests (description, user_id, created) "
+                + "SELECT 'request ' || g, g % ? + 1, now() - g * interval '1 minute' FROM generate_series(1, ?) g",
+                USERS, USERS / 2);
+        // разные названия, иначе у trigram-индекса все вещи попадают под любой запрос и выгоднее читать таблицу;
+        // каждой двадцатой вещью владеет пользователь 2, у него тысячи бронирований
+        jdbcTemplate.update("INSERT INTO items (name, description, available, owner_id, request_id) "
+                + "SELECT 'item ' || md5(g::text), 'description ' || md5('d' || g), g % 7 <> 0, "
+                + "CASE WHEN g % 20 = 0 THEN 2 ELSE g % ? + 1 END, "
+                + "CASE WHEN g % 10 = 0 THEN g / 10 % ? + 1 END FROM generate_series(1, ?) g",
+                USERS, USERS / 2, ITEMS);
+        // у каждой вещи бронирования идут друг за другом без пересечений, половина в прошлом;
+        // каждое десятое бронирование делает пользователь 1, чтобы без подходящего индекса его список сортировался
+        jdbcTemplate.update("INSERT INTO bookings (start, end_time, user_id, item_id, status) "
+                + "SELECT now() + (g / ? - ? / 2) * interval '10 days', "
+                + "now() + (g / ? - ? / 2) * interval '10 days' + interval '3 days', "
+                + "CASE WHEN g % 10 = 0 THEN 1 ELSE g * 7 % ? + 1 END, g % ? + 1, g % 3 "
+                + "FROM generate_series(0, ? - 1) g",
+                ITEMS, BOOKINGS_PER_ITEM, ITEMS, BOOKINGS_PER_ITEM, USERS, ITEMS, ITEMS * BOOKINGS_PER_ITEM);
+        // бронирования двух-трёхлетней давности, их BookingArchive разложит по двум годовым секциям
+        jdbcTemplate.update("INSERT INTO bookings (start, end_time, user_id, item_id, status) "
+                + "SELECT now() - interval '2 years' - (g / ?) * interval '120 days', "
+                + "now() - interval '2 years' - (g / ?) * interval '120 days' + interval '3 days', "
+                + "CASE WHEN g % 10 = 0 THEN 1 ELSE g * 7 % ? + 1 END, g % ? + 1, g % 3 "
+                + "FROM generate_series(0, ? - 1) g",
+                ITEMS, ITEMS, USERS, ITEMS, ITEMS * ARCHIVED_PER_ITEM);
+        bookingArchive.archive();
+        jdbcTemplate.update("INSERT INTO comments (text, item_id, user_id) "
+                + "SELECT 'comment ' || g, g % ? + 1, g / ? + 1 FROM generate_series(0, ? - 1) g",
+                ITEMS, ITEMS, ITEMS * 3);
+        // VACUUM переносит в GIN-индексы отложенные вставки, иначе планировщик считает trigram-индексы дорогими
+        jdbcTemplate.execute("VACUUM ANALYZE");
+    }
+
+    @TestFactory
+    Stream<DynamicTest> bookingRepositoryQueries() {
+        LocalDateTime now = LocalDateTime.now();
+        ScrollPosition first = ScrollPosition.keyset();
+        ScrollPosition next = ScrollPosition.forward(Map.of("start", now, "id", 1L));
+        Limit limit = Limit.of(20);
+        return Stream.of(
+                query("findByBookerIdOrderByStartAscIdAsc",
+                        () -> bookingRepository.findByBookerIdOrderByStartAscIdAsc(1L, next, limit)),
+                query("findByBookerIdAndEndBeforeOrderByEndAscIdAsc",
+                        () -> bookingRepository.findByBookerIdAndEndBeforeOrderByEndAscIdAsc(1L, now, first, limit)),
+                query("findByBookerIdAndStartAfterOrderByStartAscIdAsc",
+                        () -> bookingRepository.findByBookerIdAndStartAfterOrderByStartAscIdAsc(1L, now, first, limit)),
+                query("findByBookerIdAndEndAfterAndStartBeforeOrderByStartAscIdAsc",
+                        () -> bookingRepository.findByBookerIdAndEndAfterAndStartBeforeOrderByStartAscIdAsc(1L, now,
+                                now, first, limit)),
+                query("findByBookerIdAndStatusOrderByStartAscIdAsc",
+                        () -> bookingRepository.findByBookerIdAndStatusOrderByStartAscIdAsc(1L, Status.WAITING,
+                                first, limit)),
+                query("findByOwnerIdOrderByStartAscIdAsc",
+                        () -> bookingRepository.findByOwnerIdOrderByStartAscIdAsc(HEAVY_OWNER, next, limit)),
+                query("findByOwnerIdAndEndBeforeOrderByEndAscIdAsc",
+                        () -> bookingRepository.findByOwnerIdAndEndBeforeOrderByEndAscIdAsc(HEAVY_OWNER, now, first,
+                                limit)),
+                query("findByOwnerIdAndStartAfterOrderByStartAscIdAsc",
+                        () -> bookingRepository.findByOwnerIdAndStartAfterOrderByStartAscIdAsc(HEAVY_OWNER, now, first,
+                                limit)),
+                query("findByOwnerIdAndEndAfterAndStartBeforeOrderByStartAscIdAsc",
+                        () -> bookingRepository.findByOwnerIdAndEndAfterAndStartBeforeOrderByStartAscIdAsc(HEAVY_OWNER,
+                                now, now, first, limit)),
+                query("findByOwnerIdAndStatusOrderByStartAscIdAsc",
+                        () -> bookingRepository.findByOwnerIdAndStatusOrderByStartAscIdAsc(HEAVY_OWNER, Status.WAITING,
+                                first, limit)),
+                query("findById", () -> bookingRepository.findById(1L)),
+                query("findSimpleByIdAndBookerId", () -> bookingRepository.findSimpleByIdAndBookerId(1L, 1L)),
+                query("findSimpleByIdAndOwnerId", () -> bookingRepository.findSimpleByIdAndOwnerId(1L, 1L)),
+                query("findVersionById", () -> bookingRepository.findVersionById(1L)),
+                query("findActiveIntervals", () -> bookingRepository.findActiveIntervals(1L, now,
+                        List.of(Status.WAITING, Status.APPROVED))),
+                query("findItemIdsByBookerId", () -> bookingRepository.findItemIdsByBookerId(1L)),
+                query("findFirstByBookerIdAndItemIdOrderByStartAsc",
+                        () -> bookingRepository.findFirstByBookerIdAndItemIdOrderByStartAsc(1L, 1L)),
+                query("findNextBookings", () -> bookingRepository.findNextBookings(List.of(1L, 2L, 3L), now)),
+                query("findLastBookings", () -> bookingRepository.findLastBookings(List.of(1L, 2L, 3L), now)),
+                query("findNearestEnds", () -> bookingRepository.findNearestEnds(List.of(1L, 2L, 3L), now)));
+    }
+
+    @Test
+    void archiveMovesFinishedBookings() {
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM bookings", Long.class))
+                .isEqualTo((long) ITEMS * BOOKINGS_PER_ITEM);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM bookings_archive", Long.class))
+                .isEqualTo((long) ITEMS * ARCHIVED_PER_ITEM);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM pg_inherits "
+                + "WHERE inhparent = 'bookings_archive'::regclass", Long.class)).isGreaterThan(1);
+    }
+
+    @TestFactory
+    Stream<DynamicTest> archivedBookingRepositoryQueries() {
+        LocalDateTime now = LocalDateTime.now();
+        ScrollPosition first = ScrollPosition.keyset();
+        ScrollPosition next = ScrollPosition.forward(Map.of("start", now.minusYears(3), "id", 1L));
+        Limit limit = Limit.of(20);
+        return Stream.of(
+                query("findByBookerIdOrderByStartAscIdAsc",
+                        () -> archivedBookingRepository.findByBookerIdOrderByStartAscIdAsc(1L, next, limit)),
+                query("findByBookerIdAndEndBeforeOrderByEndAscIdAsc",
+                        () -> archivedBookingRepository.findByBookerIdAndEndBeforeOrderByEndAscIdAsc(1L, now, first,
+                                limit)),
+                query("findByBookerIdAndStatusOrderByStartAscIdAsc",
+                        () -> archivedBookingRepository.findByBookerIdAndStatusOrderByStartAscIdAsc(1L,
+                                Status.WAITING, first, limit)),
+                query("findByOwnerIdOrderByStartAscIdAsc",
+                        () -> archivedBookingRepository.findByOwnerIdOrderByStartAscIdAsc(HEAVY_OWNER, next, limit)),
+                query("findByOwnerIdAndEndBeforeOrderByEndAscIdAsc",
+                        () -> archivedBookingRepository.findByOwnerIdAndEndBeforeOrderByEndAscIdAsc(HEAVY_OWNER, now,
+                                first, limit)),
+                query("findByOwnerIdAndStatusOrderByStartAscIdAsc",
+                        () -> archivedBookingRepository.findByOwnerIdAndStatusOrderByStartAscIdAsc(HEAVY_OWNER,
+                                Status.WAITING, first, limit)),
+                query("findById", () -> archivedBookingRepository.findById(1L)),
+                query("findSimpleByIdAndBookerId", () -> archivedBookingRepository.findSimpleByIdAndBookerId(1L, 1L)),
+                query("findSimpleByIdAndOwnerId", () -> archivedBookingRepository.findSimpleByIdAndOwnerId(1L, 1L)),
+                query("findVersionById", () -> archivedBookingRepository.findVersionById(1L)),
+                query("existsByBookerIdAndItemId", () -> archivedBookingRepository.existsByBookerIdAndItemId(1L, 10L)),
+                query("findItemIdsByBookerId", () -> archivedBookingRepository.findItemIdsByBookerId(1L)),
+                query("findLastBookings", () -> archivedBookingRepository.findLastBookings(List.of(1L, 2L, 3L))));
+    }
+
+    @TestFactory
+    Stream<DynamicTest> itemRepositoryQueries() {
+        return Stream.of(
+                query("findByOwnerIdOrderByIdAsc", () -> itemRepository.findByOwnerIdOrderByIdAsc(HEAVY_OWNER,
+                        ScrollPosition.forward(Map.of("id", 100L)), Limit.of(20))),
+                query("findByText", () -> itemRepository.findByText(
+                        jdbcTemplate.queryForObject("SELECT substr(md5('1234'), 1, 8)", String.class), 20)),
+                query("findById", () -> itemRepository.findById(1L)),
+                query("findForUpdateById", () -> transactionTemplate.executeWithoutResult(
+                        status -> itemRepository.findForUpdateById(1L))),
+                query("findIdsByOwnerId", () -> itemRepository.findIdsByOwnerId(HEAVY_OWNER)),
+                query("findWithCommentsById", () -> itemRepository.findWithCommentsById(1L)),
+                query("findAnswersByRequestIds", () -> itemRepository.findAnswersByRequestIds(List.of(1L, 2L, 3L))),
+                query("findVersionById", () -> itemRepository.findVersionById(1L)),
+                query("findVersionsByOwnerId", () -> itemRepository.findVersionsByOwnerId(HEAVY_OWNER, 100L,
+                        Limit.of(20))),
+                // в данных отзывы оставляют только пользователи 1-3, по двадцать тысяч каждый,
+                // у остальных авторов отзывы должны находиться по индексу
+                query("incrementVersionsByCommentAuthor", () -> transactionTemplate.executeWithoutResult(
+                        status -> itemRepository.incrementVersionsByCommentAuthor(5L))),
+                query("findLatestByItemIds", () -> commentRepository.findLatestByItemIds(List.of(1L, 2L, 3L), 10)));
+    }
+
+    @TestFactory
+    Stream<DynamicTest> itemRequestRepositoryQueries() {
+        ScrollPosition next = ScrollPosition.forward(Map.of("created", Instant.now(), "id", (long) USERS));
+        Limit limit = Limit.of(20);
+        return Stream.of(
+                query("findByRequesterIdOrderByCreatedDescIdDesc",
+                        () -> itemRequestRepository.findByRequesterIdOrderByCreatedDescIdDesc(1L, next, limit)),
+                query("findByRequesterIdNotOrderByCreatedDescIdDesc",
+                        () -> itemRequestRepository.findByRequesterIdNotOrderByCreatedDescIdDesc(1L, next, limit)),
+                query("findCreatedById", () -> itemRequestRepository.findCreatedById(1L)));
+    }
+
+    private DynamicTest query(String name, Runnable query) {
+        return DynamicTest.dynamicTest(name, () -> {
+            List<String> executed;
+            synchronized (statements) {
+                statements.clear();
+                query.run();
+                executed = new ArrayList<>(statements);
+            }
+            assertThat(executed).as("SQL запроса " + name).isNotEmpty();
+            for (String sql : executed) {
+                List<String> problems = new ArrayList<>();
+                String plan = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class);
+                collectProblems(objectMapper.readTree(plan).get(0).get("Plan"), problems);
+                assertThat(problems).as(name + ": " + sql).isEmpty();
+            }
+        });
+    }
+
+    private void collectProblems(JsonNode plan, List<String> problems) {
+        String type = plan.get("Node Type").asText();
+        // секции архива называются bookings_archive_<год>
+        String relation = plan.path("Relation Name").asText().replaceFirst("^(bookings_archive)_\\d{4}$", "$1");
+        if ("Seq Scan".equals(type) && LARGE_TABLES.contains(relation)) {
+            problems.add("Seq Scan on " + relation);
+        }
+        if ("Sort".equals(type) && plan.get("Plan Rows").asLong() > MAX_SORTED_ROWS) {
+            problems.add("Sort of " + plan.get("Plan Rows").asLong() + " rows by " + plan.get("Sort Key"));
+        }
+        for (JsonNode child : plan.path("Plans")) {
+            collectProblems(child, problems);
+        }
+    }
+
+    // запоминает выполненный SQL с подставленными значениями параметров, чтобы разобрать план с теми же значениями
+    @TestConfiguration
+    static class StatementCaptureConfig {
+
+        @Bean
+        static BeanPostProcessor statementCapture() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? new CapturingDataSource(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    private static class CapturingDataSource extends DelegatingDataSource {
+
+        CapturingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return proxy(Connection.class, connection, (method, args) -> {
+                Object result = invoke(connection, method, args);
+                if ("prepareStatement".equals(method.getName()) && args[0] instanceof String sql) {
+                    return capture(sql, (PreparedStatement) result);
+                }
+                return result;
+            });
+        }
+
+        private static PreparedStatement capture(String sql, PreparedStatement statement) {
+            Map<Integer, Object> parameters = new HashMap<>();
+            return proxy(PreparedStatement.class, statement, (method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                    parameters.put(index, args[1]);
+                } else if ("clearParameters".equals(name)) {
+                    parameters.clear();
+                } else if (name.startsWith("execute") && (args == null || args.length == 0)
+                        && isExplainable(sql)) {
+                    synchronized (statements) {
+                        statements.add(inline(sql, parameters));
+                    }
+                }
+                return invoke(statement, method, args);
+            });
+        }
+
+        // EXPLAIN без ANALYZE не выполняет UPDATE, поэтому массовые обновления проверяются так же, как выборки
+        private static boolean isExplainable(String sql) {
+            String statement = sql.trim().toLowerCase();
+            return statement.startsWith("select") || statement.startsWith("update");
+        }
+
+        private static String inline(String sql, Map<Integer, Object> parameters) {
+            StringBuilder result = new StringBuilder();
+            int index = 0;
+            for (char c : sql.toCharArray()) {
+                if (c != '?') {
+                    result.append(c);
+                    continue;
+                }
+                Object value = parameters.get(++index);
+                if (value == null || value instanceof Number || value instanceof Boolean) {
+                    result.append(value);
+                } else {
+                    result.append('\'').append(value.toString().replace("'", "''")).append('\'');
+                }
+            }
+            return result.toString();
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, Handler handler) {
+            return (T) Proxy.newProxyInstance(CapturingDataSource.class.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> handler.handle(method, args));
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private interface Handler {
+            Object handle(Method method, Object[] args) throws Throwable;
+        }
+    }
+}
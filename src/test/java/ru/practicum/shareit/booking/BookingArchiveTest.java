@@ -0,0 +1,96 @@
+package ru.practicum.shareit.booking;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.practicum.shareit.item.ItemService;
+import ru.practicum.shareit.user.UserService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Удаление вещей и пользователей, у которых есть бронирования в архиве, на PostgreSQL.
+ * База из SHAREIT_PLAN_TEST_URL очищается перед запуском:
+ * <pre>
+ * SHAREIT_PLAN_TEST_URL=jdbc:postgresql://localhost:5432/shareit_plans mvn test -Dtest=BookingArchiveTest
+ * </pre>
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=${SHAREIT_PLAN_TEST_URL}",
+        "spring.datasource.username=${SHAREIT_PLAN_TEST_USERNAME:postgres}",
+        "spring.datasource.password=${SHAREIT_PLAN_TEST_PASSWORD:}",
+        "spring.datasource.driverClassName=org.postgresql.Driver",
+        "spring.flyway.enabled=true",
+        "spring.flyway.clean-disabled=false",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "shareit.bookings.archive.enabled=true",
+        "shareit.bookings.archive.initial-delay=PT1H"})
+@ActiveProfiles("test")
+@EnabledIfEnvironmentVariable(named = "SHAREIT_PLAN_TEST_URL", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class BookingArchiveTest {
+
+    private static final long OWNER = 1;
+    private static final long BOOKER = 2;
+    private static final long OTHER_OWNER = 3;
+
+    @Autowired
+    private Flyway flyway;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private BookingArchive bookingArchive;
+    @Autowired
+    private ItemService itemService;
+    @Autowired
+    private UserService userService;
+
+    // вещи 1 и 2 у первого владельца, вещь 3 у второго, у каждой по бронированию двухлетней давности в архиве
+    @BeforeAll
+    void seed() {
+        flyway.clean();
+        flyway.migrate();
+        jdbcTemplate.update("INSERT INTO users (name, email) VALUES ('owner', 'owner@mail.ru'), "
+                + "('booker', 'booker@mail.ru'), ('other', 'other@mail.ru')");
+        jdbcTemplate.update("INSERT INTO items (name, description, available, owner_id) "
+                + "SELECT 'item ' || g, 'description ' || g, true, CASE WHEN g < 3 THEN ? ELSE ? END "
+                + "FROM generate_series(1, 3) g", OWNER, OTHER_OWNER);
+        jdbcTemplate.update("INSERT INTO bookings (start, end_time, item_id, user_id, status, owner_id) "
+                + "SELECT now() - interval '731 day', now() - interval '730 day', i.id, ?, 1, i.owner_id "
+                + "FROM items i", BOOKER);
+        bookingArchive.archive();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM bookings_archive", Long.class)).isEqualTo(3);
+    }
+
+    @Test
+    void deletingItemDeletesItsArchivedBookings() {
+        itemService.deleteItem(3L, OTHER_OWNER);
+
+        assertThat(archived(3)).isZero();
+    }
+
+    @Test
+    void deletingOwnerDeletesArchivedBookingsOfOwnedItems() {
+        userService.deleteUser(OWNER);
+
+        assertThat(archived(1) + archived(2)).isZero();
+    }
+
+    @Test
+    void archiveStatusHasSameTypeAsBookings() {
+        String sql = "SELECT data_type FROM information_schema.columns WHERE table_name = ? AND column_name = 'status'";
+
+        assertThat(jdbcTemplate.queryForObject(sql, String.class, "bookings_archive"))
+                .isEqualTo(jdbcTemplate.queryForObject(sql, String.class, "bookings"));
+    }
+
+    private long archived(long itemId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM bookings_archive WHERE item_id = ?", Long.class, itemId);
+    }
+}
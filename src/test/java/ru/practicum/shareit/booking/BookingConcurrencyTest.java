@@ -0,0 +1,137 @@
+package ru.practicum.shareit.booking;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.practicum.shareit.booking.dto.BookingCreateDto;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Параллельные createBooking и approveBooking через BookingService на PostgreSQL. Ограничение bookings_no_overlap
+ * снимается, чтобы от пересечений защищали только блокировки вещей и проверка по таймлайну.
+ * База из SHAREIT_PLAN_TEST_URL очищается перед запуском:
+ * <pre>
+ * SHAREIT_PLAN_TEST_URL=jdbc:postgresql://localhost:5432/shareit_plans mvn test -Dtest=BookingConcurrencyTest
+ * </pre>
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=${SHAREIT_PLAN_TEST_URL}",
+        "spring.datasource.username=${SHAREIT_PLAN_TEST_USERNAME:postgres}",
+        "spring.datasource.password=${SHAREIT_PLAN_TEST_PASSWORD:}",
+        "spring.datasource.driverClassName=org.postgresql.Driver",
+        "spring.datasource.hikari.maximum-pool-size=20",
+        "spring.flyway.enabled=true",
+        "spring.flyway.clean-disabled=false",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "shareit.bookings.locking=striped"})
+@ActiveProfiles("test")
+@EnabledIfEnvironmentVariable(named = "SHAREIT_PLAN_TEST_URL", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class BookingConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS = 150;
+    private static final int ITEMS = 4;
+    private static final long OWNER = 1;
+    // на всех вещей и потоков немного часов, поэтому запросы постоянно спорят за одни и те же интервалы
+    private static final int SLOTS = 100;
+    // с большим запасом: на одном ядре выходит больше сотни операций в секунду
+    private static final double MIN_OPERATIONS_PER_SECOND = 20;
+
+    @Autowired
+    private Flyway flyway;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private BookingService bookingService;
+
+    private final LocalDateTime base = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.HOURS);
+
+    @BeforeAll
+    void seed() {
+        flyway.clean();
+        flyway.migrate();
+        jdbcTemplate.execute("ALTER TABLE bookings DROP CONSTRAINT bookings_no_overlap");
+        jdbcTemplate.update("INSERT INTO users (name, email) "
+                + "SELECT 'user ' || g, 'user' || g || '@mail.ru' FROM generate_series(1, ?) g", THREADS + 1);
+        jdbcTemplate.update("INSERT INTO items (name, description, available, owner_id) "
+                + "SELECT 'item ' || g, 'description ' || g, true, ? FROM generate_series(1, ?) g", OWNER, ITEMS);
+    }
+
+    @Test
+    void concurrentCreateAndApproveNeverLeaveOverlaps() throws Exception {
+        List<Long> created = new CopyOnWriteArrayList<>();
+        AtomicLong operations = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long booker = OWNER + 1 + t;
+            workers.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < ATTEMPTS; i++) {
+                    try {
+                        if (created.isEmpty() || random.nextBoolean()) {
+                            created.add(bookingService.createBooking(newBooking(random), booker).getId());
+                        } else {
+                            // отклонение освобождает интервал, повторное подтверждение снова проверяет его
+                            Long id = created.get(random.nextInt(created.size()));
+                            bookingService.approveBooking(id, OWNER, random.nextBoolean());
+                        }
+                    } catch (IllegalStateException | ConcurrencyFailureException e) {
+                        // интервал занят, вещь слишком долго бронировалась другим потоком
+                        // или то же бронирование одновременно подтвердили и отклонили (409 в API)
+                    }
+                    operations.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(2, TimeUnit.MINUTES)).isTrue();
+        double seconds = (System.nanoTime() - started) / 1e9;
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+
+        assertThat(created).isNotEmpty();
+        Long overlaps = jdbcTemplate.queryForObject("SELECT count(*) FROM bookings a JOIN bookings b "
+                + "ON a.item_id = b.item_id AND a.id < b.id AND a.start < b.end_time AND b.start < a.end_time "
+                + "WHERE a.status IN (0, 1) AND b.status IN (0, 1)", Long.class);
+        assertThat(overlaps).as("пересекающиеся ожидающие и подтверждённые бронирования").isZero();
+        assertThat(operations.get() / seconds).as("операций в секунду").isGreaterThan(MIN_OPERATIONS_PER_SECOND);
+    }
+
+    private BookingCreateDto newBooking(ThreadLocalRandom random) {
+        LocalDateTime from = base.plusHours(random.nextInt(SLOTS));
+        BookingCreateDto dto = new BookingCreateDto();
+        dto.setItemId(1L + random.nextInt(ITEMS));
+        dto.setStart(from);
+        dto.setEnd(from.plusHours(1 + random.nextInt(5)));
+        return dto;
+    }
+}
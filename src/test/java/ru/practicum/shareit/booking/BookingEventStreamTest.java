@@ -0,0 +1,56 @@
+package ru.practicum.shareit.booking;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BookingEventStreamTest {
+
+    private static final int MAX_PER_USER = 2;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BookingEventStream stream = new BookingEventStream(8, Duration.ofMinutes(1), Duration.ofMinutes(1),
+            MAX_PER_USER, meterRegistry);
+
+    @AfterEach
+    void close() {
+        stream.close();
+    }
+
+    @Test
+    void subscriptionOverLimitClosesOldest() throws Exception {
+        List<SseEmitter> emitters = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            emitters.add(stream.subscribe(1L));
+        }
+
+        // закрытый поток больше не принимает событий
+        assertThatThrownBy(() -> emitters.get(0).send("event")).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> emitters.get(1).send("event")).isInstanceOf(IllegalStateException.class);
+        emitters.get(2).send("event");
+        emitters.get(3).send("event");
+        assertThat(subscribers()).isEqualTo(MAX_PER_USER);
+    }
+
+    @Test
+    void limitIsPerUser() throws Exception {
+        stream.subscribe(1L);
+        stream.subscribe(1L);
+        SseEmitter other = stream.subscribe(2L);
+
+        other.send("event");
+        assertThat(subscribers()).isEqualTo(3);
+    }
+
+    private double subscribers() {
+        return meterRegistry.get("shareit.bookings.stream.subscribers").gauge().value();
+    }
+}
@@ -0,0 +1,93 @@
+package ru.practicum.shareit.booking;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookingTimelineTest {
+
+    private static final long NOW = 0;
+
+    @Test
+    void adjacentIntervalsDoNotOverlap() {
+        BookingTimeline timeline = timeline();
+        timeline.add(1, 10, 20, NOW);
+
+        // интервалы полуоткрытые: конец одной аренды может совпадать с началом другой
+        assertThat(timeline.overlaps(20, 30)).isFalse();
+        assertThat(timeline.overlaps(0, 10)).isFalse();
+        assertThat(timeline.overlaps(19, 21)).isTrue();
+        assertThat(timeline.overlaps(9, 11)).isTrue();
+    }
+
+    @Test
+    void containmentOverlapsBothWays() {
+        BookingTimeline timeline = timeline();
+        timeline.add(1, 10, 40, NOW);
+
+        assertThat(timeline.overlaps(20, 30)).isTrue();
+        assertThat(timeline.overlaps(0, 50)).isTrue();
+        assertThat(timeline.overlaps(10, 40)).isTrue();
+    }
+
+    @Test
+    void longEarlierBookingCoversGapsBetweenLaterOnes() {
+        BookingTimeline timeline = timeline();
+        timeline.add(1, 0, 100, NOW);
+        timeline.add(2, 10, 20, NOW);
+        timeline.add(3, 30, 40, NOW);
+
+        // ближайшее по началу бронирование [10, 20) кончилось, но [0, 100) ещё идёт
+        assertThat(timeline.overlaps(25, 28)).isTrue();
+        assertThat(timeline.overlaps(100, 110)).isFalse();
+    }
+
+    @Test
+    void removalFreesInterval() {
+        BookingTimeline timeline = timeline();
+        timeline.add(1, 10, 20, NOW);
+        timeline.add(2, 30, 40, NOW);
+
+        timeline.remove(1);
+
+        assertThat(timeline.overlaps(10, 20)).isFalse();
+        assertThat(timeline.overlaps(30, 40)).isTrue();
+        assertThat(timeline.size()).isEqualTo(1);
+        // неизвестный id ничего не меняет
+        timeline.remove(42);
+        assertThat(timeline.size()).isEqualTo(1);
+    }
+
+    @Test
+    void statusChangesReleaseAndReserveSameBooking() {
+        BookingTimeline timeline = timeline();
+        timeline.add(1, 10, 20, NOW);
+
+        // отклонение снимает бронирование, повторное подтверждение возвращает его
+        timeline.remove(1);
+        assertThat(timeline.overlaps(10, 20)).isFalse();
+        timeline.add(1, 10, 20, NOW);
+        assertThat(timeline.overlaps(10, 20)).isTrue();
+
+        // повторное добавление того же id заменяет интервал, а не дублирует его
+        timeline.add(1, 50, 60, NOW);
+        assertThat(timeline.size()).isEqualTo(1);
+        assertThat(timeline.overlaps(10, 20)).isFalse();
+        assertThat(timeline.overlaps(50, 60)).isTrue();
+    }
+
+    @Test
+    void addDropsFinishedBookings() {
+        BookingTimeline timeline = new BookingTimeline(new long[]{1, 2}, new long[]{0, 10}, new long[]{5, 20});
+
+        timeline.add(3, 30, 40, 15);
+
+        assertThat(timeline.size()).isEqualTo(2);
+        assertThat(timeline.overlaps(0, 5)).isFalse();
+        assertThat(timeline.overlaps(15, 16)).isTrue();
+    }
+
+    private static BookingTimeline timeline() {
+        return new BookingTimeline(new long[0], new long[0], new long[0]);
+    }
+}
@@ -0,0 +1,79 @@
+package ru.practicum.shareit.booking;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItemLocksTest {
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS = 2_000;
+    private static final int ITEMS = 4;
+
+    @Test
+    void concurrentBookingsOfOneItemNeverOverlap() throws InterruptedException {
+        ItemLocks locks = new ItemLocks(null, ItemLocks.Mode.STRIPED, 1024, Duration.ofSeconds(5),
+                new SimpleMeterRegistry());
+        List<BookingTimeline> timelines = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            timelines.add(new BookingTimeline(new long[0], new long[0], new long[0]));
+        }
+        Queue<long[]> accepted = new ConcurrentLinkedQueue<>();
+        AtomicLong ids = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < ATTEMPTS; i++) {
+                    long itemId = random.nextInt(ITEMS);
+                    long from = random.nextInt(10_000);
+                    long to = from + 1 + random.nextInt(30);
+                    Runnable release = locks.acquire(List.of(itemId));
+                    try {
+                        BookingTimeline timeline = timelines.get((int) itemId);
+                        if (!timeline.overlaps(from, to)) {
+                            // между проверкой и записью без блокировки успел бы вклиниться другой поток
+                            Thread.yield();
+                            timeline.add(ids.incrementAndGet(), from, to, 0);
+                            accepted.add(new long[]{itemId, from, to});
+                        }
+                    } finally {
+                        release.run();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        List<long[]> bookings = new ArrayList<>(accepted);
+        bookings.sort(Comparator.<long[]>comparingLong(b -> b[0]).thenComparingLong(b -> b[1]));
+        assertThat(bookings).isNotEmpty();
+        for (int i = 1; i < bookings.size(); i++) {
+            long[] previous = bookings.get(i - 1);
+            long[] current = bookings.get(i);
+            if (previous[0] == current[0]) {
+                assertThat(previous[2]).as("бронирования вещи %d пересекаются", current[0])
+                        .isLessThanOrEqualTo(current[1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ru.practicum.shareit.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaRoutingDataSourceTest {
+
+    private static final long USER = 7;
+
+    private HikariDataSource primary;
+
+    @BeforeEach
+    void createPrimary() {
+        // одно соединение: вторая транзакция на основной базе не дождалась бы его и упала по таймауту
+        primary = new HikariDataSource();
+        primary.setJdbcUrl("jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1");
+        primary.setMaximumPoolSize(1);
+        primary.setConnectionTimeout(250);
+        new JdbcTemplate(primary).execute("CREATE TABLE IF NOT EXISTS source (name varchar(16))");
+        new JdbcTemplate(primary).execute("MERGE INTO source KEY (name) VALUES ('primary')");
+    }
+
+    @AfterEach
+    void closePrimary() {
+        primary.close();
+    }
+
+    @Test
+    void loadUnderPrimaryTransactionReusesItsConnection() {
+        // реплика недоступна, и read-only транзакция уходит на основную базу
+        Fixture fixture = new Fixture(new DownDataSource());
+
+        String loaded = fixture.readOnly().execute(status -> {
+            fixture.jdbcTemplate.queryForObject("SELECT name FROM source", String.class);
+            return fixture.primaryReads.read(() ->
+                    fixture.jdbcTemplate.queryForObject("SELECT name FROM source", String.class));
+        });
+
+        assertThat(loaded).isEqualTo("primary");
+        assertThat(primary.getHikariPoolMXBean().getActiveConnections()).isZero();
+    }
+
+    @Test
+    void loadUnderReplicaTransactionReadsPrimary() {
+        SimpleDriverDataSource replica = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1");
+        new JdbcTemplate(replica).execute("CREATE TABLE IF NOT EXISTS source (name varchar(16))");
+        new JdbcTemplate(replica).execute("MERGE INTO source KEY (name) VALUES ('replica')");
+        Fixture fixture = new Fixture(replica);
+
+        List<String> loaded = fixture.readOnly().execute(status -> List.of(
+                fixture.jdbcTemplate.queryForObject("SELECT name FROM source", String.class),
+                fixture.primaryReads.read(() ->
+                        fixture.jdbcTemplate.queryForObject("SELECT name FROM source", String.class))));
+
+        assertThat(loaded).containsExactly("replica", "primary");
+    }
+
+    @Test
+    void rolledBackWriteDoesNotMakeReadsSticky() throws Exception {
+        SimpleDriverDataSource replica = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1");
+        new JdbcTemplate(replica).execute("CREATE TABLE IF NOT EXISTS source (name varchar(16))");
+        new JdbcTemplate(replica).execute("MERGE INTO source KEY (name) VALUES ('replica')");
+        Fixture fixture = new Fixture(replica);
+        AtomicReference<String> afterRollback = new AtomicReference<>();
+        AtomicReference<String> afterCommit = new AtomicReference<>();
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-Sharer-User-Id", String.valueOf(USER));
+        new RoutingContext().doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            TransactionTemplate write = new TransactionTemplate(fixture.transactionManager);
+            write.executeWithoutResult(status -> {
+                fixture.jdbcTemplate.update("UPDATE source SET name = name");
+                status.setRollbackOnly();
+            });
+            afterRollback.set(fixture.readOnly().execute(status ->
+                    fixture.jdbcTemplate.queryForObject("SELECT name FROM source", String.class)));
+            write.executeWithoutResult(status -> fixture.jdbcTemplate.update("UPDATE source SET name = name"));
+            afterCommit.set(fixture.readOnly().execute(status ->
+                    fixture.jdbcTemplate.queryForObject("SELECT name FROM source", String.class)));
+        });
+
+        assertThat(afterRollback.get()).isEqualTo("replica");
+        assertThat(afterCommit.get()).isEqualTo("primary");
+    }
+
+    private final class Fixture {
+
+        private final DataSourceTransactionManager transactionManager;
+        private final JdbcTemplate jdbcTemplate;
+        private final PrimaryReads primaryReads;
+
+        Fixture(DataSource replica) {
+            ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replica),
+                    Duration.ofMinutes(1), new SimpleMeterRegistry());
+            routing.afterPropertiesSet();
+            LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+            // иначе прокси берёт соединение для чтения настроек по умолчанию прямо внутри первой транзакции
+            dataSource.setDefaultAutoCommit(true);
+            dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            this.transactionManager = new DataSourceTransactionManager(dataSource);
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+            this.primaryReads = new PrimaryReads(transactionManager, true);
+        }
+
+        TransactionTemplate readOnly() {
+            TransactionTemplate template = new TransactionTemplate(transactionManager);
+            template.setReadOnly(true);
+            return template;
+        }
+    }
+
+    private static final class DownDataSource extends SimpleDriverDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            throw new SQLException("Реплика недоступна");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ru.practicum.shareit.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    // бюджет адреса пропустил бы половину только за десять секунд
+    private static final int USERS = 5_000;
+    private static final String PROXY = "10.0.0.1";
+
+    @Test
+    void manyUsersBehindOneAddressAreLimitedOnlyPerUser() throws Exception {
+        RateLimitFilter filter = filter(false);
+
+        assertThat(passed(filter, USERS)).isEqualTo(USERS);
+    }
+
+    @Test
+    void addressBudgetLimitsRotatingIdsFromOneAddress() throws Exception {
+        RateLimitFilter filter = filter(true);
+
+        assertThat(passed(filter, USERS)).isLessThan(USERS / 2);
+    }
+
+    private static RateLimitFilter filter(boolean addressEnabled) throws Exception {
+        return new RateLimitFilter(true, 50, 100, 10, 20, addressEnabled, 200, 400, 100_000,
+                new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    // по одному GET от каждого пользователя, все с одного адреса
+    private static int passed(RateLimitFilter filter, int users) throws Exception {
+        int passed = 0;
+        for (int user = 1; user <= users; user++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/items");
+            request.setRemoteAddr(PROXY);
+            request.addHeader("X-Sharer-User-Id", String.valueOf(user));
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+            if (response.getStatus() != 429) {
+                passed++;
+            }
+        }
+        return passed;
+    }
+}
@@ -0,0 +1,83 @@
+package ru.practicum.shareit.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS = 1_000;
+    private static final int BURST = 100;
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void concurrentRequestsGetExactlyBurstThenRefillAtRate() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(10, BURST, 1_000);
+        long now = SECOND;
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ATTEMPTS; i++) {
+                    if (limiter.acquire("user:1", now) == 0) {
+                        admitted.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(admitted.get()).isEqualTo(BURST);
+        assertThat(limiter.acquire("user:1", now)).isEqualTo(SECOND / 10);
+        assertThat(limiter.acquire("user:2", now)).isZero();
+        // за секунду при 10 запросах в секунду освобождается ровно 10 мест
+        long later = now + SECOND;
+        int refilled = 0;
+        while (limiter.acquire("user:1", later) == 0) {
+            refilled++;
+        }
+        assertThat(refilled).isEqualTo(10);
+    }
+
+    @Test
+    void evictsOnlyFullBuckets() {
+        RateLimiter limiter = new RateLimiter(10, BURST, 1_000);
+        limiter.acquire("user:1", SECOND);
+        for (int i = 0; i < BURST; i++) {
+            limiter.acquire("user:2", SECOND);
+        }
+
+        // первое ведро снова полное через 0.1 с, второе - только через 10 с
+        assertThat(limiter.evictIdle(2 * SECOND)).isEqualTo(1);
+        assertThat(limiter.size()).isEqualTo(1);
+        assertThat(limiter.acquire("user:2", 2 * SECOND)).isZero();
+    }
+
+    @Test
+    void rejectsNewKeysWhenFullOfBusyBuckets() {
+        RateLimiter limiter = new RateLimiter(10, BURST, 2);
+        limiter.acquire("user:1", SECOND);
+        limiter.acquire("user:2", SECOND);
+
+        // оба ведра ещё не полные, места для третьего ключа нет, известные ключи работают как раньше
+        assertThat(limiter.acquire("user:3", SECOND)).isEqualTo(SECOND / 10);
+        assertThat(limiter.acquire("user:1", SECOND)).isZero();
+        assertThat(limiter.size()).isEqualTo(2);
+
+        // через секунду оба ведра снова полные и освобождают место
+        assertThat(limiter.acquire("user:3", 2 * SECOND)).isZero();
+        assertThat(limiter.size()).isEqualTo(1);
+    }
+}